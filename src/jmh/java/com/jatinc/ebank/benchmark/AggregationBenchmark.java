@@ -0,0 +1,102 @@
+package com.jatinc.ebank.benchmark;
+
+import com.jatinc.ebank.dto.BankAccountDTO;
+import com.jatinc.ebank.dto.MonthlySummaryDTO;
+import com.jatinc.ebank.dto.PaymentDTO;
+import com.jatinc.ebank.serdes.SerdeFormat;
+import com.jatinc.ebank.serdes.ValueSerdes;
+import org.apache.kafka.common.serialization.Serde;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of adding one payment to a month that already has <code>transactions</code> payments.
+ *
+ * <code>process*</code> only measure the in memory update of the bucket, the inserted payment is removed again
+ * so the bucket keeps its size. <code>aggregate*</code> measure what the aggregations in
+ * <code>PaymentTopology</code> do per record with the record cache disabled: read the value from the store,
+ * update it and write it back.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class AggregationBenchmark {
+
+    private static final String TOPIC = "transactions";
+
+    @Param({"JSON", "BINARY"})
+    public SerdeFormat format;
+
+    @Param({"10", "1000", "100000"})
+    public int transactions;
+
+    private Serde<BankAccountDTO> accountSerde;
+    private Serde<MonthlySummaryDTO> summarySerde;
+
+    private BankAccountDTO account;
+    private byte[] accountBytes;
+    private byte[] summaryBytes;
+
+    private PaymentDTO latestPayment;
+    private PaymentDTO backdatedPayment;
+
+    @Setup
+    public void setUp(){
+        accountSerde = ValueSerdes.forFormat(format, BankAccountDTO.class);
+        summarySerde = ValueSerdes.forFormat(format, MonthlySummaryDTO.class);
+
+        account = BenchmarkData.monthBucket(BenchmarkData.IBAN, BenchmarkData.MONTH, transactions);
+        accountBytes = accountSerde.serializer().serialize(TOPIC, account);
+        summaryBytes = summarySerde.serializer().serialize(TOPIC, BenchmarkData.monthSummary(account));
+
+//        the latest payment goes to the end of the bucket, a backdated one to the start
+        latestPayment = BenchmarkData.payment(BenchmarkData.IBAN, BenchmarkData.MONTH, transactions);
+        latestPayment.setTransactionDate(BenchmarkData.MONTH.atEndOfMonth());
+        latestPayment.setPaymentId("payment-latest");
+        backdatedPayment = BenchmarkData.payment(BenchmarkData.IBAN, BenchmarkData.MONTH, transactions + 1);
+        backdatedPayment.setTransactionDate(BenchmarkData.MONTH.atDay(1));
+        backdatedPayment.setPaymentId("");
+    }
+
+    @Benchmark
+    public BankAccountDTO processLatest(){
+        account.process(latestPayment);
+        List<PaymentDTO> payments = account.getTransactions();
+        payments.remove(payments.size() - 1);
+        return account;
+    }
+
+    @Benchmark
+    public BankAccountDTO processBackdated(){
+        account.process(backdatedPayment);
+        account.getTransactions().remove(0);
+        return account;
+    }
+
+    @Benchmark
+    public byte[] aggregateTransactions(){
+        BankAccountDTO aggregate = accountSerde.deserializer().deserialize(TOPIC, accountBytes);
+        return accountSerde.serializer().serialize(TOPIC, aggregate.process(latestPayment));
+    }
+
+    @Benchmark
+    public byte[] aggregateSummary(){
+        MonthlySummaryDTO aggregate = summarySerde.deserializer().deserialize(TOPIC, summaryBytes);
+        return summarySerde.serializer().serialize(TOPIC, aggregate.process(latestPayment));
+    }
+}
@@ -0,0 +1,70 @@
+package com.jatinc.ebank.benchmark;
+
+import com.jatinc.ebank.dto.BankAccountDTO;
+import com.jatinc.ebank.dto.MonthlySummaryDTO;
+import com.jatinc.ebank.dto.PaymentDTO;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Synthetic data shared by the benchmarks. the same index always gives the same payment, so runs are comparable.
+ */
+final class BenchmarkData {
+
+    static final String IBAN = "CH93-0000-0000-0000-0000-0";
+    static final YearMonth MONTH = YearMonth.of(2022, 2);
+    static final String CURRENCY = "EUR";
+
+    private BenchmarkData(){
+    }
+
+    /**
+     * get a synthetic payment, a third of them are credited
+     * @param iBan - the iban account of the payment
+     * @param month - the month of the payment, the day is spread over the month by the index
+     * @param index - the number of the payment
+     * @return the payment, already normalized like the topology does.
+     */
+    static PaymentDTO payment(String iBan, YearMonth month, int index){
+        LocalDate date = month.atDay(1 + index % month.lengthOfMonth());
+        String amount = (index % 3 == 0 ? "-" : "") + (index * 37 % 10000) + "." + String.format("%02d", index % 100);
+        return PaymentDTO.builder()
+                .paymentId("payment-" + index)
+                .amount(CURRENCY + " " + amount)
+                .iBan(iBan)
+                .transactionDate(date)
+                .description("Card payment " + index + " at some merchant")
+                .build()
+                .normalize();
+    }
+
+    /**
+     * get a month bucket in the same state the aggregation leaves it in, with the transactions ordered
+     * @param size - the number of transactions in the bucket
+     * @return the bucket.
+     */
+    static BankAccountDTO monthBucket(String iBan, YearMonth month, int size){
+        List<PaymentDTO> payments = new ArrayList<>(size);
+        for(int i = 0; i < size; i++){
+            payments.add(payment(iBan, month, i));
+        }
+        payments.sort(BankAccountDTO.TRANSACTION_ORDER);
+        return new BankAccountDTO(iBan, month, payments, month.atEndOfMonth());
+    }
+
+    /**
+     * get the summary the aggregation keeps next to a month bucket
+     * @param account - the month bucket
+     * @return the totals of all the transactions in the bucket.
+     */
+    static MonthlySummaryDTO monthSummary(BankAccountDTO account){
+        MonthlySummaryDTO summary = new MonthlySummaryDTO();
+        for(PaymentDTO payment : account.getTransactions()){
+            summary.process(payment);
+        }
+        return summary;
+    }
+}
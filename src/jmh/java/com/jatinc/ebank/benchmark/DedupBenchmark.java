@@ -0,0 +1,121 @@
+package com.jatinc.ebank.benchmark;
+
+import com.jatinc.ebank.topology.DeduplicationProcessor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.TestInputTopic;
+import org.apache.kafka.streams.Topology;
+import org.apache.kafka.streams.TopologyTestDriver;
+import org.apache.kafka.streams.kstream.Consumed;
+import org.apache.kafka.streams.kstream.KStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the <code>DeduplicationProcessor</code> per record, by the number of payments the dedup window holds.
+ *
+ * payments arrive one every <code>STEP_MS</code> of event time, so the window is
+ * <code>paymentsInWindow * STEP_MS</code> long and the store is filled up to it before measuring. 0 runs the same
+ * topology without the dedup stage, as the baseline. <code>duplicatePercent</code> of the records are copies of a
+ * recent payment. the records go through rocksdb like in the application, but only the dedup stage is measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class DedupBenchmark {
+
+    private static final String TOPIC = "transactions";
+    private static final long STEP_MS = 1_000;
+    private static final int RECENT_PAYMENTS = 1_000;
+
+    @Param({"0", "10000", "100000", "1000000"})
+    public int paymentsInWindow;
+
+    @Param({"0", "10"})
+    public int duplicatePercent;
+
+    private TopologyTestDriver driver;
+    private TestInputTopic<String, byte[]> payments;
+    private SplittableRandom random;
+    private byte[] value;
+    private long timestamp;
+    private long sequence;
+
+    @Setup
+    public void setUp() throws IOException {
+        Properties properties = new Properties();
+        properties.put(StreamsConfig.APPLICATION_ID_CONFIG, "payment-dedup-benchmark");
+        properties.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "dummy:9092");
+        properties.put(StreamsConfig.STATE_DIR_CONFIG,
+                Files.createTempDirectory("payment-dedup-benchmark").toString());
+        properties.put(StreamsConfig.CACHE_MAX_BYTES_BUFFERING_CONFIG, "0");
+
+        driver = new TopologyTestDriver(buildTopology(Duration.ofMillis(paymentsInWindow * STEP_MS)), properties);
+        payments = driver.createInputTopic(TOPIC, Serdes.String().serializer(), Serdes.ByteArray().serializer());
+        random = new SplittableRandom(42);
+        value = new byte[128];
+
+//        fill the window, so every measured record is looked up in a store of the full size
+        for(int i = 0; i < paymentsInWindow; i++){
+            pipeNext(0);
+        }
+    }
+
+    @TearDown
+    public void tearDown(){
+        driver.close();
+    }
+
+    @Benchmark
+    public void dedup(){
+        pipeNext(duplicatePercent);
+    }
+
+    private void pipeNext(int duplicates){
+        timestamp += STEP_MS;
+        String key = sequence > 0 && random.nextInt(100) < duplicates
+                ? "payment-" + (sequence - 1 - random.nextLong(Math.min(sequence, RECENT_PAYMENTS)))
+                : "payment-" + sequence++;
+        payments.pipeInput(key, value, timestamp);
+    }
+
+    private static Topology buildTopology(Duration window){
+        StreamsBuilder streamsBuilder = new StreamsBuilder();
+        KStream<String, byte[]> stream = streamsBuilder.stream(TOPIC, Consumed.with(Serdes.String(),
+                Serdes.ByteArray()));
+
+        if(!window.isZero()){
+            Counter duplicates = Counter.builder("payment.ingest.duplicates").register(new SimpleMeterRegistry());
+            streamsBuilder.addStateStore(DeduplicationProcessor.storeBuilder(window));
+            stream = stream.processValues(() -> new DeduplicationProcessor<>(window, duplicates),
+                    DeduplicationProcessor.DEDUP_STORE);
+        }
+//        no sink, the test driver would keep every record written to an output topic
+        stream.foreach((key, payment) -> { });
+
+        return streamsBuilder.build();
+    }
+}
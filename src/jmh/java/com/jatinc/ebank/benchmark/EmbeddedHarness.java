@@ -0,0 +1,230 @@
+package com.jatinc.ebank.benchmark;
+
+import com.jatinc.ebank.VirtualBankServerApplication;
+import com.jatinc.ebank.dto.MonthlySummaryDTO;
+import com.jatinc.ebank.dto.PaymentDTO;
+import com.jatinc.ebank.serdes.SerdeFormat;
+import com.jatinc.ebank.serdes.ValueSerdes;
+import com.jatinc.ebank.topology.PaymentTopology;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.Serializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.apache.kafka.streams.KafkaStreams;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.StoreQueryParameters;
+import org.apache.kafka.streams.errors.InvalidStateStoreException;
+import org.apache.kafka.streams.state.KeyValueIterator;
+import org.apache.kafka.streams.state.QueryableStoreTypes;
+import org.apache.kafka.streams.state.ReadOnlyKeyValueStore;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Starts the whole application against an embedded broker, so it measures ingestion through kafka and the latency
+ * of <code>/api/transactions</code> as clients see it.
+ *
+ * kafka streams keeps its state under <code>java.io.tmpdir</code>, which the <code>harness</code> execution points
+ * to <code>target/harness</code>. that state is wiped on start, it belongs to the embedded broker of a previous run.
+ */
+class EmbeddedHarness {
+
+    private static final int PARTITIONS = 4;
+    private static final String JWT_SECRET = "payment-harness-secret";
+    private static final Duration INGESTION_TIMEOUT = Duration.ofMinutes(10);
+    private static final Duration SAMPLE_INTERVAL = Duration.ofMillis(500);
+
+    private final ThroughputHarness harness;
+
+    EmbeddedHarness(ThroughputHarness harness){
+        this.harness = harness;
+    }
+
+    void run() throws Exception {
+        Path stateDir = Path.of(System.getProperty("java.io.tmpdir"), "kafka-streams");
+        FileSystemUtils.deleteRecursively(stateDir);
+        Files.createDirectories(stateDir);
+
+        EmbeddedKafkaBroker broker = new EmbeddedKafkaBroker(1, true, PARTITIONS,
+                PaymentTopology.TRANSACTIONS_TOPIC, PaymentTopology.EXCHANGE_RATES_TOPIC);
+        broker.afterPropertiesSet();
+
+        int port = harness.intOption("port");
+        try(ConfigurableApplicationContext context = SpringApplication.run(VirtualBankServerApplication.class,
+                "--spring.kafka.bootstrap-servers=" + broker.getBrokersAsString(),
+                "--server.port=" + port,
+                "--application.security.jwt.secret-key=" + JWT_SECRET,
+                "--currency.exchange.rate.url=http://localhost:" + port + "/unused",
+                "--currency.exchange.rate.api.key=harness")){
+            KafkaStreams kafkaStreams = context.getBean(KafkaStreams.class);
+            awaitRunning(kafkaStreams);
+            ingest(broker.getBrokersAsString(), kafkaStreams, stateDir);
+            query(port);
+        }finally{
+            broker.destroy();
+        }
+    }
+
+    private void awaitRunning(KafkaStreams kafkaStreams) throws Exception {
+        long deadline = System.nanoTime() + INGESTION_TIMEOUT.toNanos();
+        while(kafkaStreams.state() != KafkaStreams.State.RUNNING){
+            if(System.nanoTime() > deadline){
+                throw new TimeoutException("Kafka streams is still " + kafkaStreams.state());
+            }
+            Thread.sleep(100);
+        }
+    }
+
+    private void ingest(String bootstrapServers, KafkaStreams kafkaStreams, Path stateDir) throws Exception {
+        Properties properties = new Properties();
+        properties.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        properties.put(ProducerConfig.LINGER_MS_CONFIG, 5);
+        properties.put(ProducerConfig.BATCH_SIZE_CONFIG, 64 * 1024);
+
+        Serializer<PaymentDTO> paymentSerializer = ValueSerdes.forFormat(SerdeFormat.JSON, PaymentDTO.class)
+                .serializer();
+        PaymentGenerator generator = harness.newGenerator();
+        int events = harness.intOption("events");
+
+        long start = System.nanoTime();
+        try(KafkaProducer<String, byte[]> producer = new KafkaProducer<>(properties, new StringSerializer(),
+                new ByteArraySerializer())){
+            for(int event = 0; event < events; event++){
+                PaymentDTO payment = generator.next();
+                producer.send(new ProducerRecord<>(PaymentTopology.TRANSACTIONS_TOPIC, payment.getPaymentId(),
+                        paymentSerializer.serialize(PaymentTopology.TRANSACTIONS_TOPIC, payment)));
+            }
+        }
+
+//        ingestion is done when the summaries count every payment, sample the store size while we wait
+        long deadline = start + INGESTION_TIMEOUT.toNanos();
+        long processed;
+        do{
+            Thread.sleep(SAMPLE_INTERVAL.toMillis());
+            if(System.nanoTime() > deadline){
+                throw new TimeoutException("Only " + countProcessed(kafkaStreams) + " of " + events
+                        + " events were processed");
+            }
+            processed = countProcessed(kafkaStreams);
+            ThroughputHarness.reportStoreSize(processed, countBuckets(kafkaStreams), directorySize(stateDir));
+        }while(processed < events);
+
+        ThroughputHarness.reportIngestion(events, System.nanoTime() - start);
+    }
+
+    private long countProcessed(KafkaStreams kafkaStreams){
+        long processed = 0;
+        try(KeyValueIterator<String, MonthlySummaryDTO> summaries = summaryStore(kafkaStreams).all()){
+            while(summaries.hasNext()){
+                KeyValue<String, MonthlySummaryDTO> summary = summaries.next();
+                processed += summary.value.getCount();
+            }
+        }catch(InvalidStateStoreException ex){
+//            rebalancing, try again on the next sample
+        }
+        return processed;
+    }
+
+    private long countBuckets(KafkaStreams kafkaStreams){
+        try{
+            return summaryStore(kafkaStreams).approximateNumEntries();
+        }catch(InvalidStateStoreException ex){
+            return 0;
+        }
+    }
+
+    private ReadOnlyKeyValueStore<String, MonthlySummaryDTO> summaryStore(KafkaStreams kafkaStreams){
+        return kafkaStreams.store(StoreQueryParameters.fromNameAndType(PaymentTopology.SUMMARY_STORE,
+                QueryableStoreTypes.keyValueStore()));
+    }
+
+    private long directorySize(Path directory) throws IOException {
+        try(Stream<Path> files = Files.walk(directory)){
+            return files.filter(Files::isRegularFile)
+                    .mapToLong(file -> file.toFile().length())
+                    .sum();
+        }
+    }
+
+    private void query(int port) throws Exception {
+        HttpClient httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(2))
+                .build();
+        int concurrency = harness.intOption("concurrency");
+        int queriesPerClient = harness.intOption("queries") / concurrency;
+        int pageSize = harness.intOption("page-size");
+        AtomicLong failures = new AtomicLong();
+
+        ExecutorService clients = Executors.newFixedThreadPool(concurrency);
+        List<Future<LatencyRecorder>> results = new ArrayList<>();
+        long start = System.nanoTime();
+        for(int client = 0; client < concurrency; client++){
+//            every client queries its own accounts, with the same skew as the payments
+            PaymentGenerator generator = harness.newGenerator(harness.longOption("seed") + 1 + client);
+            results.add(clients.submit(() -> {
+                LatencyRecorder latencies = new LatencyRecorder();
+                for(int query = 0; query < queriesPerClient; query++){
+                    HttpRequest request = monthRequest(port, generator.nextIBan(), generator.nextMonth(), pageSize);
+                    long requestStart = System.nanoTime();
+                    HttpResponse<byte[]> response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+                    latencies.record(System.nanoTime() - requestStart);
+                    if(response.statusCode() != 200 && response.statusCode() != 404){
+                        failures.incrementAndGet();
+                    }
+                }
+                return latencies;
+            }));
+        }
+
+        LatencyRecorder latencies = new LatencyRecorder();
+        for(Future<LatencyRecorder> result : results){
+            latencies.merge(result.get());
+        }
+        long elapsedNanos = System.nanoTime() - start;
+        clients.shutdown();
+
+        System.out.printf("Query latency with %d clients: %s, %.0f queries/sec, %d failed%n", concurrency,
+                latencies.summary(), latencies.count() / (elapsedNanos / 1e9), failures.get());
+    }
+
+    private HttpRequest monthRequest(int port, String iBan, YearMonth month, int pageSize){
+        String token = Jwts.builder()
+                .claim("userToken", iBan)
+                .setExpiration(new Date(System.currentTimeMillis() + Duration.ofHours(1).toMillis()))
+                .signWith(SignatureAlgorithm.HS256, JWT_SECRET.getBytes())
+                .compact();
+        String body = "{\"month\":\"" + month + "\",\"page\":1,\"size\":" + pageSize + "}";
+
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/transactions"))
+                .header("Authorization", "Bearer " + token)
+                .header("Content-Type", "application/json")
+                .method("GET", HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+}
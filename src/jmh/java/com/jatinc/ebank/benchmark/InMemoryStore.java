@@ -0,0 +1,81 @@
+package com.jatinc.ebank.benchmark;
+
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.state.KeyValueIterator;
+import org.apache.kafka.streams.state.ReadOnlyKeyValueStore;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Read only key value store over a sorted map, standing in for a rocksdb store in the benchmarks. values are
+ * kept serialized and deserialized on every read, like a real store does, so callers get their own copy.
+ */
+class InMemoryStore<V> implements ReadOnlyKeyValueStore<String, V> {
+
+    private static final String TOPIC = "benchmark";
+
+    private final NavigableMap<String, byte[]> values = new TreeMap<>();
+    private final Serde<V> serde;
+
+    InMemoryStore(Serde<V> serde){
+        this.serde = serde;
+    }
+
+    void put(String key, V value){
+        values.put(key, serde.serializer().serialize(TOPIC, value));
+    }
+
+    @Override
+    public V get(String key){
+        byte[] value = values.get(key);
+        return value == null ? null : serde.deserializer().deserialize(TOPIC, value);
+    }
+
+    @Override
+    public KeyValueIterator<String, V> range(String from, String to){
+        return iterator(values.subMap(from, true, to, true));
+    }
+
+    @Override
+    public KeyValueIterator<String, V> all(){
+        return iterator(values);
+    }
+
+    @Override
+    public long approximateNumEntries(){
+        return values.size();
+    }
+
+    private KeyValueIterator<String, V> iterator(NavigableMap<String, byte[]> entries){
+        Iterator<Map.Entry<String, byte[]>> iterator = entries.entrySet().iterator();
+        return new KeyValueIterator<>() {
+            private Map.Entry<String, byte[]> next = iterator.hasNext() ? iterator.next() : null;
+
+            @Override
+            public boolean hasNext(){
+                return next != null;
+            }
+
+            @Override
+            public KeyValue<String, V> next(){
+                KeyValue<String, V> current = KeyValue.pair(next.getKey(),
+                        serde.deserializer().deserialize(TOPIC, next.getValue()));
+                next = iterator.hasNext() ? iterator.next() : null;
+                return current;
+            }
+
+            @Override
+            public String peekNextKey(){
+                return next.getKey();
+            }
+
+            @Override
+            public void close(){
+            }
+        };
+    }
+}
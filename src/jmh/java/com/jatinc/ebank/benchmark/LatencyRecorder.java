@@ -0,0 +1,53 @@
+package com.jatinc.ebank.benchmark;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Records latencies in nanoseconds and reports their percentiles. not thread safe, use one per thread and
+ * <code>merge</code> them.
+ */
+class LatencyRecorder {
+
+    private long[] latencies = new long[1024];
+    private int count;
+
+    void record(long nanos){
+        if(count == latencies.length){
+            latencies = Arrays.copyOf(latencies, count * 2);
+        }
+        latencies[count++] = nanos;
+    }
+
+    void merge(LatencyRecorder other){
+        for(int i = 0; i < other.count; i++){
+            record(other.latencies[i]);
+        }
+    }
+
+    int count(){
+        return count;
+    }
+
+    /**
+     * @param percentile - the percentile between 0 and 100
+     * @return the latency in nanoseconds that <code>percentile</code> percent of the records are below or at.
+     */
+    long percentile(double percentile){
+        if(count == 0){
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100 * count) - 1;
+        return sorted[Math.max(0, Math.min(count - 1, index))];
+    }
+
+    /**
+     * @return the p50, p99, p999 and max latency in milliseconds.
+     */
+    String summary(){
+        return String.format(Locale.ROOT, "p50=%.3fms p99=%.3fms p999=%.3fms max=%.3fms (%d queries)",
+                percentile(50) / 1e6, percentile(99) / 1e6, percentile(99.9) / 1e6, percentile(100) / 1e6, count);
+    }
+}
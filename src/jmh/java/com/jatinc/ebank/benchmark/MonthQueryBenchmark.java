@@ -0,0 +1,164 @@
+package com.jatinc.ebank.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.jatinc.ebank.dto.BankAccountDTO;
+import com.jatinc.ebank.dto.MonthlySummaryDTO;
+import com.jatinc.ebank.dto.PaymentDTO;
+import com.jatinc.ebank.serdes.SerdeFormat;
+import com.jatinc.ebank.serdes.ValueSerdes;
+import com.jatinc.ebank.service.ForExService;
+import com.jatinc.ebank.service.PaymentService;
+import com.jatinc.ebank.service.QueryRouter;
+import com.jatinc.ebank.service.RemoteQueryService;
+import com.jatinc.ebank.service.ResponseCache;
+import com.jatinc.ebank.topology.PaymentTopology;
+import com.jatinc.ebank.topology.StoreKeys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.KafkaStreams;
+import org.apache.kafka.streams.StoreQueryParameters;
+import org.apache.kafka.streams.state.HostInfo;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The monthly query path of <code>PaymentService</code> over in memory stores holding serialized values, and the
+ * currency conversion of <code>ForExService</code> against a rate table that is already in the global store.
+ *
+ * <code>monthQuery*</code> include reading the summary and the month bucket from the store, the page and the
+ * totals. <code>reduceMonth</code> is the debit/credit reduction over every transaction of the month, which the
+ * summary store saves us at query time.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class MonthQueryBenchmark {
+
+    private static final String TARGET_CURRENCY = "USD";
+
+    @Param({"BINARY"})
+    public SerdeFormat format;
+
+    @Param({"10", "1000", "100000"})
+    public int transactions;
+
+    @Param({"20", "1000"})
+    public int pageSize;
+
+    private PaymentService paymentService;
+    private ForExService forExService;
+    private BankAccountDTO account;
+
+    @Setup
+    public void setUp(){
+        account = BenchmarkData.monthBucket(BenchmarkData.IBAN, BenchmarkData.MONTH, transactions);
+
+        InMemoryStore<BankAccountDTO> paymentStore =
+                new InMemoryStore<>(ValueSerdes.forFormat(format, BankAccountDTO.class));
+        InMemoryStore<MonthlySummaryDTO> summaryStore =
+                new InMemoryStore<>(ValueSerdes.forFormat(format, MonthlySummaryDTO.class));
+        InMemoryStore<String> rateStore = new InMemoryStore<>(Serdes.String());
+
+        String monthKey = StoreKeys.monthKey(BenchmarkData.IBAN, BenchmarkData.MONTH);
+        paymentStore.put(monthKey, account);
+        summaryStore.put(monthKey, BenchmarkData.monthSummary(account));
+        for(int day = 1; day <= BenchmarkData.MONTH.lengthOfMonth(); day++){
+            LocalDate date = BenchmarkData.MONTH.atDay(day);
+            rateStore.put(StoreKeys.rateKey(BenchmarkData.CURRENCY, TARGET_CURRENCY, date), "1.08" + day);
+        }
+
+        Map<String, Object> stores = new HashMap<>();
+        stores.put(PaymentTopology.PAYMENTS_STORE, paymentStore);
+        stores.put(PaymentTopology.SUMMARY_STORE, summaryStore);
+        stores.put(PaymentTopology.EXCHANGE_RATE_STORE, rateStore);
+
+        KafkaStreams kafkaStreams = Mockito.mock(KafkaStreams.class);
+        Mockito.when(kafkaStreams.store(Mockito.any()))
+                .thenAnswer(invocation -> stores.get(((StoreQueryParameters<?>) invocation.getArgument(0))
+                        .storeName()));
+
+//        the rate table is always found in the store, so the exchange rate api is never called
+        forExService = new ForExService(500, Duration.ofHours(1), false, 4, WebClient.create(),
+                Schedulers.immediate(), kafkaStreams, null, new SimpleMeterRegistry());
+        RemoteQueryService remoteQueryService = new RemoteQueryService(new RestTemplate());
+        paymentService = new PaymentService(forExService, remoteQueryService,
+                new QueryRouter(kafkaStreams, remoteQueryService, new HostInfo("localhost", 8080),
+                        Schedulers.immediate()),
+                new ObjectMapper().registerModule(new JavaTimeModule()), Schedulers.immediate(),
+                new SimpleMeterRegistry(),
+                new ResponseCache(0, 0, Duration.ofMinutes(10), new SimpleMeterRegistry()));
+    }
+
+    @Benchmark
+    public Map<String, Object> monthQuery(){
+        return paymentService.getLocalUserTransactionsByMonthAsync(BenchmarkData.IBAN, BenchmarkData.MONTH, 1,
+                pageSize, null, null, false).block();
+    }
+
+    @Benchmark
+    public Map<String, Object> monthQueryConverted(){
+        return paymentService.getLocalUserTransactionsByMonthAsync(BenchmarkData.IBAN, BenchmarkData.MONTH, 1,
+                pageSize, null, TARGET_CURRENCY, false).block();
+    }
+
+    @Benchmark
+    public MonthlySummaryDTO reduceMonth(){
+        return BenchmarkData.monthSummary(account);
+    }
+
+    @Benchmark
+    public List<PaymentDTO> convertCurrencies(Page page){
+//        the schedulers are immediate and the rate table is cached after the first call, so this doesn't wait
+        return forExService.convertCurrenciesAsync(page.payments, TARGET_CURRENCY, BenchmarkData.MONTH).block();
+    }
+
+    /**
+     * conversion replaces the amounts of the payments, so every call gets fresh copies of a page
+     */
+    @State(Scope.Thread)
+    public static class Page {
+        List<PaymentDTO> payments;
+
+        @Setup(Level.Invocation)
+        public void copyPage(MonthQueryBenchmark benchmark){
+            payments = new ArrayList<>(benchmark.pageSize);
+            for(PaymentDTO payment : benchmark.account.getTransactions()
+                    .subList(0, Math.min(benchmark.pageSize, benchmark.transactions))){
+                PaymentDTO copy = PaymentDTO.builder()
+                        .paymentId(payment.getPaymentId())
+                        .iBan(payment.getIBan())
+                        .transactionDate(payment.getTransactionDate())
+                        .description(payment.getDescription())
+                        .build();
+                copy.setAmount(payment.getAmountMinor(), payment.getCurrency());
+                payments.add(copy);
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.jatinc.ebank.benchmark;
+
+import com.jatinc.ebank.dto.PaymentDTO;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Random;
+
+/**
+ * Synthetic payment stream for the load harness. the same seed always gives the same payments.
+ *
+ * accounts are picked with <code>accounts * u^skew</code> for a uniform <code>u</code>, so a skew of 1 spreads the
+ * payments evenly and higher skews send most of them to a few hot accounts. the payments of each account are spread
+ * over <code>months</code> months of history ending at <code>lastMonth</code>.
+ */
+class PaymentGenerator {
+
+    private final Random random;
+    private final int accounts;
+    private final int months;
+    private final double skew;
+    private final YearMonth lastMonth;
+    private long sequence;
+
+    PaymentGenerator(long seed, int accounts, int months, double skew, YearMonth lastMonth){
+        this.random = new Random(seed);
+        this.accounts = accounts;
+        this.months = months;
+        this.skew = skew;
+        this.lastMonth = lastMonth;
+    }
+
+    /**
+     * @return the next payment, its <code>paymentId</code> is the key of the record in the transactions topic.
+     */
+    PaymentDTO next(){
+        YearMonth month = nextMonth();
+        LocalDate date = month.atDay(1 + random.nextInt(month.lengthOfMonth()));
+        long amountMinor = 1 + random.nextInt(500_000);
+
+        return PaymentDTO.builder()
+                .paymentId("payment-" + sequence++)
+                .amount(String.format("EUR %s%d.%02d", random.nextInt(3) == 0 ? "-" : "", amountMinor / 100,
+                        amountMinor % 100))
+                .iBan(nextIBan())
+                .transactionDate(date)
+                .description("Synthetic payment " + sequence)
+                .build();
+    }
+
+    /**
+     * @return an account with the same skew as the payments, to query the accounts that actually have history.
+     */
+    String nextIBan(){
+        int account = Math.min(accounts - 1, (int) (accounts * Math.pow(random.nextDouble(), skew)));
+        return iBan(account);
+    }
+
+    /**
+     * @return one of the months of history.
+     */
+    YearMonth nextMonth(){
+        return lastMonth.minusMonths(random.nextInt(months));
+    }
+
+    static String iBan(int account){
+        return String.format("CH93-0000-0000-0000-%06d", account);
+    }
+}
@@ -0,0 +1,89 @@
+package com.jatinc.ebank.benchmark;
+
+import com.jatinc.ebank.dto.BankAccountDTO;
+import com.jatinc.ebank.dto.PaymentDTO;
+import com.jatinc.ebank.serdes.SerdeFormat;
+import com.jatinc.ebank.serdes.ValueSerdes;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.Serializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares <code>JsonSerde</code> against <code>BinarySerde</code> for a single payment and for a month bucket.
+ * the serialized size of each value is printed once per trial as <code>bytes/record</code>.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SerdeBenchmark {
+
+    private static final String TOPIC = "transactions";
+
+    @Param({"JSON", "BINARY"})
+    public SerdeFormat format;
+
+    @Param({"10", "1000", "100000"})
+    public int transactions;
+
+    private Serializer<PaymentDTO> paymentSerializer;
+    private Deserializer<PaymentDTO> paymentDeserializer;
+    private Serializer<BankAccountDTO> accountSerializer;
+    private Deserializer<BankAccountDTO> accountDeserializer;
+
+    private PaymentDTO payment;
+    private BankAccountDTO account;
+    private byte[] paymentBytes;
+    private byte[] accountBytes;
+
+    @Setup
+    public void setUp(){
+        paymentSerializer = ValueSerdes.forFormat(format, PaymentDTO.class).serializer();
+        paymentDeserializer = ValueSerdes.forFormat(format, PaymentDTO.class).deserializer();
+        accountSerializer = ValueSerdes.forFormat(format, BankAccountDTO.class).serializer();
+        accountDeserializer = ValueSerdes.forFormat(format, BankAccountDTO.class).deserializer();
+
+        account = BenchmarkData.monthBucket(BenchmarkData.IBAN, BenchmarkData.MONTH, transactions);
+        payment = account.getTransactions().get(0);
+        paymentBytes = paymentSerializer.serialize(TOPIC, payment);
+        accountBytes = accountSerializer.serialize(TOPIC, account);
+
+        System.out.printf("%n%s payment: %d bytes/record, bucket of %d: %d bytes (%.1f bytes/record)%n",
+                format, paymentBytes.length, transactions, accountBytes.length,
+                (double) accountBytes.length / transactions);
+    }
+
+    @Benchmark
+    public byte[] serializePayment(){
+        return paymentSerializer.serialize(TOPIC, payment);
+    }
+
+    @Benchmark
+    public PaymentDTO deserializePayment(){
+        return paymentDeserializer.deserialize(TOPIC, paymentBytes);
+    }
+
+    @Benchmark
+    public byte[] serializeAccount(){
+        return accountSerializer.serialize(TOPIC, account);
+    }
+
+    @Benchmark
+    public BankAccountDTO deserializeAccount(){
+        return accountDeserializer.deserialize(TOPIC, accountBytes);
+    }
+}
@@ -0,0 +1,88 @@
+package com.jatinc.ebank.benchmark;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.YearMonth;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Offline load harness, reporting ingested events/sec, store size growth and query latency percentiles.
+ *
+ * <code>mode=topology</code> drives the topology through <code>TopologyTestDriver</code> and queries
+ * <code>PaymentService</code> directly. <code>mode=embedded</code> starts the whole application against an
+ * embedded broker and queries <code>/api/transactions</code> over http with <code>concurrency</code> clients.
+ * options are passed as <code>key=value</code> arguments, see <code>DEFAULTS</code>.
+ */
+public final class ThroughputHarness {
+
+    private static final Map<String, String> DEFAULTS = Map.of(
+            "mode", "topology",
+            "events", "100000",
+            "accounts", "1000",
+            "months", "12",
+            "skew", "1.0",
+            "seed", "42",
+            "queries", "10000",
+            "concurrency", "16",
+            "page-size", "20",
+            "port", "18080");
+
+    static final YearMonth LAST_MONTH = YearMonth.of(2023, 6);
+
+    private final Map<String, String> options;
+
+    private ThroughputHarness(Map<String, String> options){
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>(DEFAULTS);
+        for(String arg : args){
+            int separator = arg.indexOf('=');
+            if(separator <= 0 || !DEFAULTS.containsKey(arg.substring(0, separator))){
+                throw new IllegalArgumentException("Unknown option " + arg + ", expected one of " + DEFAULTS.keySet());
+            }
+            options.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+
+//        the harness execution points the temp dir into target, tomcat and kafka streams expect it to exist
+        Files.createDirectories(Path.of(System.getProperty("java.io.tmpdir")));
+
+        ThroughputHarness harness = new ThroughputHarness(options);
+        System.out.println("Options: " + options);
+        switch(options.get("mode")){
+            case "topology" -> new TopologyHarness(harness).run();
+            case "embedded" -> new EmbeddedHarness(harness).run();
+            default -> throw new IllegalArgumentException("Unknown mode " + options.get("mode"));
+        }
+    }
+
+    PaymentGenerator newGenerator(){
+        return newGenerator(longOption("seed"));
+    }
+
+    PaymentGenerator newGenerator(long seed){
+        return new PaymentGenerator(seed, intOption("accounts"), intOption("months"),
+                Double.parseDouble(options.get("skew")), LAST_MONTH);
+    }
+
+    int intOption(String name){
+        return Integer.parseInt(options.get(name));
+    }
+
+    long longOption(String name){
+        return Long.parseLong(options.get(name));
+    }
+
+    static void reportIngestion(long events, long elapsedNanos){
+        System.out.printf(Locale.ROOT, "Ingested %d events in %.2fs: %.0f events/sec%n", events, elapsedNanos / 1e9,
+                events / (elapsedNanos / 1e9));
+    }
+
+    static void reportStoreSize(long events, long entries, long bytes){
+        System.out.printf(Locale.ROOT, "  after %d events: %d month buckets, %.2f MiB (%.1f bytes/event)%n", events,
+                entries, bytes / 1048576.0, (double) bytes / Math.max(events, 1));
+    }
+}
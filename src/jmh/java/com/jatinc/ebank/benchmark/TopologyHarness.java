@@ -0,0 +1,142 @@
+package com.jatinc.ebank.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.jatinc.ebank.dto.BankAccountDTO;
+import com.jatinc.ebank.dto.PaymentDTO;
+import com.jatinc.ebank.serdes.SerdeFormat;
+import com.jatinc.ebank.serdes.ValueSerdes;
+import com.jatinc.ebank.service.ForExService;
+import com.jatinc.ebank.service.PaymentService;
+import com.jatinc.ebank.service.QueryRouter;
+import com.jatinc.ebank.service.RemoteQueryService;
+import com.jatinc.ebank.service.ResponseCache;
+import com.jatinc.ebank.topology.PaymentTopology;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.common.serialization.Serializer;
+import org.apache.kafka.streams.KafkaStreams;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.StoreQueryParameters;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.TestInputTopic;
+import org.apache.kafka.streams.TopologyTestDriver;
+import org.apache.kafka.streams.state.HostInfo;
+import org.apache.kafka.streams.state.KeyValueIterator;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.mockito.Mockito;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.scheduler.Schedulers;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.YearMonth;
+import java.util.Properties;
+
+/**
+ * Drives <code>PaymentTopology</code> through <code>TopologyTestDriver</code>, so it measures our processing
+ * without any broker or network in between.
+ */
+class TopologyHarness {
+
+    private static final SerdeFormat TOPIC_FORMAT = SerdeFormat.JSON;
+    private static final SerdeFormat STORE_FORMAT = SerdeFormat.BINARY;
+    private static final int CHECKPOINTS = 10;
+
+    private final ThroughputHarness harness;
+
+    TopologyHarness(ThroughputHarness harness){
+        this.harness = harness;
+    }
+
+    void run() throws Exception {
+        Path stateDir = Files.createTempDirectory("payment-harness");
+        Properties properties = new Properties();
+        properties.put(StreamsConfig.APPLICATION_ID_CONFIG, "payment-harness");
+        properties.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "dummy:9092");
+        properties.put(StreamsConfig.STATE_DIR_CONFIG, stateDir.toString());
+        properties.put(StreamsConfig.CACHE_MAX_BYTES_BUFFERING_CONFIG, "0");
+
+        try(TopologyTestDriver driver = new TopologyTestDriver(
+                PaymentTopology.buildTopology(TOPIC_FORMAT, STORE_FORMAT), properties)){
+            Serializer<PaymentDTO> paymentSerializer = ValueSerdes.forFormat(TOPIC_FORMAT, PaymentDTO.class)
+                    .serializer();
+            TestInputTopic<String, PaymentDTO> transactions = driver.createInputTopic(
+                    PaymentTopology.TRANSACTIONS_TOPIC, Serdes.String().serializer(), paymentSerializer);
+            KeyValueStore<String, BankAccountDTO> paymentStore =
+                    driver.getKeyValueStore(PaymentTopology.PAYMENTS_STORE);
+
+            ingest(transactions, paymentStore);
+            query(driver);
+        }
+    }
+
+    private void ingest(TestInputTopic<String, PaymentDTO> transactions,
+                        KeyValueStore<String, BankAccountDTO> paymentStore){
+        PaymentGenerator generator = harness.newGenerator();
+        int events = harness.intOption("events");
+        int checkpoint = Math.max(1, events / CHECKPOINTS);
+
+        long processingNanos = 0;
+        for(int event = 1; event <= events; event++){
+            PaymentDTO payment = generator.next();
+            long start = System.nanoTime();
+            transactions.pipeInput(payment.getPaymentId(), payment);
+            processingNanos += System.nanoTime() - start;
+
+            if(event % checkpoint == 0 || event == events){
+                reportStoreSize(event, paymentStore);
+            }
+        }
+//        generating the payments and measuring the stores is left out of the rate
+        ThroughputHarness.reportIngestion(events, processingNanos);
+    }
+
+    private void reportStoreSize(long events, KeyValueStore<String, BankAccountDTO> paymentStore){
+        Serializer<BankAccountDTO> serializer = ValueSerdes.forFormat(STORE_FORMAT, BankAccountDTO.class)
+                .serializer();
+        long entries = 0;
+        long bytes = 0;
+        try(KeyValueIterator<String, BankAccountDTO> buckets = paymentStore.all()){
+            while(buckets.hasNext()){
+                KeyValue<String, BankAccountDTO> bucket = buckets.next();
+                entries++;
+                bytes += bucket.key.length() + serializer.serialize(PaymentTopology.PAYMENTS_STORE,
+                        bucket.value).length;
+            }
+        }
+        ThroughputHarness.reportStoreSize(events, entries, bytes);
+    }
+
+    private void query(TopologyTestDriver driver){
+        KafkaStreams kafkaStreams = Mockito.mock(KafkaStreams.class);
+        Mockito.when(kafkaStreams.store(Mockito.any()))
+                .thenAnswer(invocation -> driver.getKeyValueStore(
+                        ((StoreQueryParameters<?>) invocation.getArgument(0)).storeName()));
+
+        ForExService forExService = new ForExService(500, Duration.ofHours(1), false, 4, WebClient.create(),
+                Schedulers.immediate(), kafkaStreams, null, new SimpleMeterRegistry());
+        RemoteQueryService remoteQueryService = new RemoteQueryService(new RestTemplate());
+        PaymentService paymentService = new PaymentService(forExService, remoteQueryService,
+                new QueryRouter(kafkaStreams, remoteQueryService, new HostInfo("localhost", 8080),
+                        Schedulers.immediate()),
+                new ObjectMapper().registerModule(new JavaTimeModule()), Schedulers.immediate(),
+                new SimpleMeterRegistry(),
+                new ResponseCache(0, 0, Duration.ofMinutes(10), new SimpleMeterRegistry()));
+
+//        a generator with another seed, so the queried accounts follow the same skew as the payments
+        PaymentGenerator generator = harness.newGenerator(harness.longOption("seed") + 1);
+        int pageSize = harness.intOption("page-size");
+        LatencyRecorder latencies = new LatencyRecorder();
+        for(int query = 0; query < harness.intOption("queries"); query++){
+            String iBan = generator.nextIBan();
+            YearMonth month = generator.nextMonth();
+            long start = System.nanoTime();
+            paymentService.getLocalUserTransactionsByMonthAsync(iBan, month, 1, pageSize, null, null, false).block();
+            latencies.record(System.nanoTime() - start);
+        }
+        System.out.println("Query latency: " + latencies.summary());
+    }
+}
@@ -0,0 +1,73 @@
+package com.jatinc.ebank.config;
+
+import org.apache.kafka.streams.state.RocksDBConfigSetter;
+import org.rocksdb.BlockBasedTableConfig;
+import org.rocksdb.BloomFilter;
+import org.rocksdb.Cache;
+import org.rocksdb.CompressionType;
+import org.rocksdb.LRUCache;
+import org.rocksdb.Options;
+import org.rocksdb.WriteBufferManager;
+
+import java.util.Map;
+
+/**
+ * Puts every rocksdb store of this instance on one block cache, with the memtables counted against the same cache
+ * through a write buffer manager, so the off-heap memory of all our stores together stays under
+ * <code>payment.rocksdb.total-off-heap</code> however many stores and partitions we end up with.
+ *
+ * index and filter blocks live in the cache as well (with high priority) instead of growing outside of it, and every
+ * store gets bloom filters, which saves most disk reads for the point lookups our queries do.
+ */
+public class BoundedMemoryRocksDBConfig implements RocksDBConfigSetter {
+
+    public static final String TOTAL_OFF_HEAP_CONFIG = "payment.rocksdb.total-off-heap-bytes";
+    public static final String TOTAL_MEMTABLE_CONFIG = "payment.rocksdb.total-memtable-bytes";
+
+    private static final double INDEX_FILTER_BLOCK_RATIO = 0.1;
+    private static final int BLOOM_FILTER_BITS_PER_KEY = 10;
+    private static final int MAX_WRITE_BUFFERS_PER_STORE = 3;
+
+    private static Cache cache;
+    private static WriteBufferManager writeBufferManager;
+    private static long memtableBytesPerBuffer;
+
+    private BloomFilter bloomFilter;
+
+    @Override
+    public void setConfig(String storeName, Options options, Map<String, Object> configs){
+        initSharedMemory(configs);
+
+        BlockBasedTableConfig tableConfig = (BlockBasedTableConfig) options.tableFormatConfig();
+        tableConfig.setBlockCache(cache);
+        tableConfig.setCacheIndexAndFilterBlocks(true);
+        tableConfig.setCacheIndexAndFilterBlocksWithHighPriority(true);
+        tableConfig.setPinTopLevelIndexAndFilter(true);
+        bloomFilter = new BloomFilter(BLOOM_FILTER_BITS_PER_KEY);
+        tableConfig.setFilterPolicy(bloomFilter);
+        options.setTableFormatConfig(tableConfig);
+
+        options.setWriteBufferManager(writeBufferManager);
+        options.setWriteBufferSize(memtableBytesPerBuffer);
+        options.setMaxWriteBufferNumber(MAX_WRITE_BUFFERS_PER_STORE);
+        options.setCompressionType(CompressionType.LZ4_COMPRESSION);
+    }
+
+    @Override
+    public void close(String storeName, Options options){
+//        the cache and write buffer manager are shared by all the stores and live as long as the process
+        bloomFilter.close();
+    }
+
+    private static synchronized void initSharedMemory(Map<String, Object> configs){
+        if(cache != null){
+            return;
+        }
+        long totalOffHeapBytes = Long.parseLong(String.valueOf(configs.get(TOTAL_OFF_HEAP_CONFIG)));
+        long totalMemtableBytes = Long.parseLong(String.valueOf(configs.get(TOTAL_MEMTABLE_CONFIG)));
+
+        cache = new LRUCache(totalOffHeapBytes, -1, false, INDEX_FILTER_BLOCK_RATIO);
+        writeBufferManager = new WriteBufferManager(totalMemtableBytes, cache);
+        memtableBytesPerBuffer = Math.max(1024 * 1024, totalMemtableBytes / MAX_WRITE_BUFFERS_PER_STORE);
+    }
+}
@@ -0,0 +1,52 @@
+package com.jatinc.ebank.config;
+
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+
+@Configuration
+public class ForExConfig {
+
+    @Value("${currency.exchange.rate.http.max-connections:20}")
+    private int maxConnections;
+
+    @Value("${currency.exchange.rate.http.max-pending:1000}")
+    private int maxPendingRequests;
+
+    @Value("${currency.exchange.rate.http.connect-timeout:2s}")
+    private Duration connectTimeout;
+
+    @Value("${currency.exchange.rate.http.read-timeout:5s}")
+    private Duration readTimeout;
+
+    /**
+     * a single non blocking <code>WebClient</code> for the exchange rate api, backed by a pool of keep-alive
+     * connections so we don't pay for a new connection (and tls handshake) on every call. requests waiting for a
+     * connection don't hold a thread, and at most <code>max-pending</code> of them wait before failing fast.
+     * @param webClientBuilder - spring's web client builder
+     * @return the shared web client.
+     */
+    @Bean
+    public WebClient forExWebClient(WebClient.Builder webClientBuilder){
+        ConnectionProvider connectionProvider = ConnectionProvider.builder("forex")
+                .maxConnections(maxConnections)
+                .pendingAcquireMaxCount(maxPendingRequests)
+                .pendingAcquireTimeout(readTimeout)
+                .build();
+
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis())
+                .responseTimeout(readTimeout);
+
+        return webClientBuilder
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .build();
+    }
+}
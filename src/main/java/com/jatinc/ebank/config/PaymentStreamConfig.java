@@ -1,48 +1,219 @@
 package com.jatinc.ebank.config;
 
 import com.jatinc.ebank.dto.PaymentDTO;
+import com.jatinc.ebank.serdes.SerdeFormat;
+import com.jatinc.ebank.service.ResponseCache;
 import com.jatinc.ebank.topology.PaymentTopology;
+import com.jatinc.ebank.topology.TopologySettings;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.kafka.KafkaStreamsMetrics;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.common.serialization.Serdes;
 import org.apache.kafka.streams.KafkaStreams;
 import org.apache.kafka.streams.StreamsConfig;
 import org.apache.kafka.streams.Topology;
+import org.apache.kafka.streams.state.HostInfo;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.kafka.annotation.KafkaStreamsDefaultConfiguration;
 import org.springframework.kafka.support.serializer.JsonDeserializer;
+import org.springframework.util.unit.DataSize;
 
+import java.time.Duration;
 import java.util.Properties;
 
 @Configuration
 public class PaymentStreamConfig {
 
+    private static final String APPLICATION_ID = "transactions";
+
     @Value("${spring.kafka.bootstrap-servers}")
     private String bootstrapServers;
 
+    @Value("${payment.serde.topic-format:JSON}")
+    private SerdeFormat topicFormat;
+
+    @Value("${payment.serde.store-format:BINARY}")
+    private SerdeFormat storeFormat;
+
+    @Value("${payment.streams.advertised-host:localhost}")
+    private String advertisedHost;
+
+    @Value("${server.port:8080}")
+    private int serverPort;
+
+    @Value("${payment.streams.metrics-recording-level:INFO}")
+    private String metricsRecordingLevel;
+
+    @Value("${payment.streams.profile:LOW_LATENCY}")
+    private StreamsProfile profile;
+
+    @Value("${payment.streams.cache-max-bytes:#{null}}")
+    private DataSize cacheMaxBytes;
+
+    @Value("${payment.streams.num-stream-threads:#{null}}")
+    private Integer numStreamThreads;
+
+    @Value("${payment.streams.commit-interval:#{null}}")
+    private Duration commitInterval;
+
+    @Value("${payment.streams.producer.linger:#{null}}")
+    private Duration producerLinger;
+
+    @Value("${payment.streams.producer.batch-size:#{null}}")
+    private DataSize producerBatchSize;
+
+    @Value("${payment.streams.producer.compression:#{null}}")
+    private String producerCompression;
+
+    @Value("${payment.streams.num-standby-replicas:0}")
+    private int numStandbyReplicas;
+
+    @Value("${payment.streams.state-dir:}")
+    private String stateDir;
+
+    @Value("${payment.rocksdb.bounded-memory:true}")
+    private boolean rocksDbBoundedMemory;
+
+    @Value("${payment.rocksdb.total-off-heap:256MB}")
+    private DataSize rocksDbTotalOffHeap;
+
+    @Value("${payment.rocksdb.total-memtable:64MB}")
+    private DataSize rocksDbTotalMemtable;
+
+    @Value("${payment.streams.processing-guarantee:at_least_once}")
+    private String processingGuarantee;
+
+    @Value("${payment.dedup.window:0}")
+    private Duration dedupWindow;
+
+    @Value("${payment.spending.retention:30d}")
+    private Duration spendingRetention;
+
+    @Value("${payment.spending.grace:1h}")
+    private Duration spendingGrace;
+
+    @Value("${payment.summary-events.enabled:false}")
+    private boolean summaryEventsEnabled;
+
+    @Value("${payment.summary-events.interval:30s}")
+    private Duration summaryEventsInterval;
+
+    @Value("${payment.summary-events.max-buffered:100000}")
+    private long summaryEventsMaxBuffered;
+
+    @Value("${payment.summary-events.close-grace:3d}")
+    private Duration monthCloseGrace;
+
     @Bean(name = KafkaStreamsDefaultConfiguration.DEFAULT_STREAMS_CONFIG_BEAN_NAME)
     public Properties getConfiguration(){
         Properties properties = new Properties();
-        properties.put(StreamsConfig.APPLICATION_ID_CONFIG, "transactions");
+        properties.put(StreamsConfig.APPLICATION_ID_CONFIG, APPLICATION_ID);
         properties.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
         properties.put(StreamsConfig.DEFAULT_KEY_SERDE_CLASS_CONFIG, Serdes.String().getClass());
         properties.put(StreamsConfig.DEFAULT_VALUE_SERDE_CLASS_CONFIG, Serdes.String().getClass());
         properties.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
-        properties.put(StreamsConfig.CACHE_MAX_BYTES_BUFFERING_CONFIG, "0");
         properties.put(JsonDeserializer.TRUSTED_PACKAGES, PaymentDTO.class);
+        properties.put(StreamsConfig.APPLICATION_SERVER_CONFIG, advertisedHost + ":" + serverPort);
+//        INFO covers commit latency, process rate and the rocksdb properties, DEBUG adds the rocksdb statistics
+        properties.put(StreamsConfig.METRICS_RECORDING_LEVEL_CONFIG, metricsRecordingLevel);
+//        exactly_once_v2 commits the stores, the repartition topics and the consumed offsets in one transaction
+        properties.put(StreamsConfig.PROCESSING_GUARANTEE_CONFIG, processingGuarantee);
+//        standby replicas keep warm copies of the stores on other instances, to fail over to without a restore
+        properties.put(StreamsConfig.NUM_STANDBY_REPLICAS_CONFIG, numStandbyReplicas);
+        if(!stateDir.isBlank()){
+//            on a persistent volume the stores survive a restart and only the tail of the changelogs is restored
+            properties.put(StreamsConfig.STATE_DIR_CONFIG, stateDir);
+        }
+
+        if(!dedupWindow.isZero() && !StreamsConfig.EXACTLY_ONCE_V2.equals(processingGuarantee)){
+//            under at_least_once a crash can remember a payment that never reached the aggregates and then drop it
+            throw new IllegalArgumentException("payment.dedup.window needs "
+                    + "payment.streams.processing-guarantee=exactly_once_v2, not " + processingGuarantee);
+        }
+
+        applyPerformanceSettings(properties);
         return properties;
     }
 
+    /**
+     * apply the settings of the chosen <code>StreamsProfile</code>, then any of them that were set one by one, and
+     * bound the memory of our rocksdb stores
+     * @param properties - the configuration of kafka streams
+     */
+    private void applyPerformanceSettings(Properties properties){
+        profile.apply(properties);
+
+        if(cacheMaxBytes != null){
+            properties.put(StreamsConfig.CACHE_MAX_BYTES_BUFFERING_CONFIG, cacheMaxBytes.toBytes());
+        }
+        if(numStreamThreads != null){
+            properties.put(StreamsConfig.NUM_STREAM_THREADS_CONFIG, numStreamThreads);
+        }
+        if(commitInterval != null){
+            properties.put(StreamsConfig.COMMIT_INTERVAL_MS_CONFIG, commitInterval.toMillis());
+        }
+        if(producerLinger != null){
+            properties.put(StreamsConfig.producerPrefix(ProducerConfig.LINGER_MS_CONFIG), producerLinger.toMillis());
+        }
+        if(producerBatchSize != null){
+            properties.put(StreamsConfig.producerPrefix(ProducerConfig.BATCH_SIZE_CONFIG),
+                    (int) producerBatchSize.toBytes());
+        }
+        if(producerCompression != null){
+            properties.put(StreamsConfig.producerPrefix(ProducerConfig.COMPRESSION_TYPE_CONFIG), producerCompression);
+        }
+
+        if(rocksDbBoundedMemory){
+            properties.put(StreamsConfig.ROCKSDB_CONFIG_SETTER_CLASS_CONFIG, BoundedMemoryRocksDBConfig.class);
+            properties.put(BoundedMemoryRocksDBConfig.TOTAL_OFF_HEAP_CONFIG, rocksDbTotalOffHeap.toBytes());
+            properties.put(BoundedMemoryRocksDBConfig.TOTAL_MEMTABLE_CONFIG, rocksDbTotalMemtable.toBytes());
+        }
+    }
+
+    /**
+     * the host and port other instances can reach this instance on, which kafka streams shares with the rest of the
+     * group so every instance knows who owns which partition of our stores.
+     * @return the <code>application.server</code> of this instance.
+     */
     @Bean
-    public KafkaStreams kafkaStreams(){
+    public HostInfo localHostInfo(){
+        return new HostInfo(advertisedHost, serverPort);
+    }
+
+    /**
+     * start kafka streams, its client metrics (threads, tasks, stores, and the consumers and producers it uses)
+     * are exported through the same registry as the rest of our metrics. it is closed with the application
+     * context, so the stores are flushed and checkpointed and the next start can reuse them.
+     * @param meterRegistry - the registry to export the client metrics to
+     * @param streamsStateListener - keeps track of the state of kafka streams for the readiness check
+     * @param restoreProgressListener - reports the restore progress of our stores
+     * @param responseCache - the cached responses, months that change are dropped from it
+     * @return the started kafka streams client.
+     */
+    @Bean
+    public KafkaStreams kafkaStreams(MeterRegistry meterRegistry, StreamsStateListener streamsStateListener,
+                                     RestoreProgressListener restoreProgressListener, ResponseCache responseCache){
         Properties configuration = getConfiguration();
-        Topology topology = PaymentTopology.buildTopology();
+        Topology topology = PaymentTopology.buildTopology(topicFormat, storeFormat, TopologySettings.builder()
+                .dedupWindow(dedupWindow)
+                .spendingRetention(spendingRetention)
+                .spendingGrace(spendingGrace)
+                .summaryEvents(summaryEventsEnabled)
+                .summaryInterval(summaryEventsInterval)
+                .summaryBufferRecords(summaryEventsMaxBuffered)
+                .monthCloseGrace(monthCloseGrace)
+                .monthUpdates(responseCache::invalidate)
+                .build());
         KafkaStreams kafkaStreams = new KafkaStreams(topology, configuration);
 
-        kafkaStreams.start();
+        new KafkaStreamsMetrics(kafkaStreams).bindTo(meterRegistry);
+        kafkaStreams.setStateListener(streamsStateListener);
+        kafkaStreams.setGlobalStateRestoreListener(restoreProgressListener);
 
-        Runtime.getRuntime().addShutdownHook(new Thread(kafkaStreams::close));
+        kafkaStreams.start();
 
         return kafkaStreams;
     }
@@ -0,0 +1,64 @@
+package com.jatinc.ebank.config;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+import java.util.List;
+
+@Configuration
+public class QueryRoutingConfig {
+
+    @Value("${payment.routing.http.max-connections-per-instance:20}")
+    private int maxConnectionsPerInstance;
+
+    @Value("${payment.routing.http.connect-timeout:1s}")
+    private Duration connectTimeout;
+
+    @Value("${payment.routing.http.read-timeout:5s}")
+    private Duration readTimeout;
+
+    /**
+     * the <code>RestTemplate</code> used to query the other instances, with a pool of keep-alive connections per
+     * instance. decimals are read as <code>BigDecimal</code> so the totals we pass on keep their scale.
+     * @param objectMapperBuilder - spring's object mapper builder
+     * @return the shared rest template.
+     */
+    @Bean
+    public RestTemplate instanceRestTemplate(Jackson2ObjectMapperBuilder objectMapperBuilder){
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnPerRoute(maxConnectionsPerInstance)
+                .setMaxConnTotal(maxConnectionsPerInstance * 8)
+                .build();
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(Timeout.ofMilliseconds(connectTimeout.toMillis()))
+                .setResponseTimeout(Timeout.ofMilliseconds(readTimeout.toMillis()))
+                .build();
+
+        CloseableHttpClient httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .build();
+
+        ObjectMapper objectMapper = objectMapperBuilder.build()
+                .enable(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS);
+
+        RestTemplate restTemplate = new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient));
+        restTemplate.setMessageConverters(List.of(new MappingJackson2HttpMessageConverter(objectMapper)));
+        return restTemplate;
+    }
+}
@@ -0,0 +1,42 @@
+package com.jatinc.ebank.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+@Configuration
+public class QuerySchedulerConfig {
+
+    @Value("${payment.query.store-threads:16}")
+    private int storeThreads;
+
+    @Value("${payment.query.max-queued:10000}")
+    private int maxQueuedQueries;
+
+    @Value("${currency.exchange.rate.store-threads:4}")
+    private int exchangeRateThreads;
+
+    /**
+     * the scheduler the reactive endpoints read the state stores on. store reads block (rocksdb and
+     * deserialization), so they get their own bounded pool instead of running on the netty or servlet threads,
+     * and the number of requests in flight isn't tied to the number of threads.
+     * @return the store query scheduler, disposed with the context.
+     */
+    @Bean(destroyMethod = "dispose")
+    public Scheduler storeQueryScheduler(){
+        return Schedulers.newBoundedElastic(storeThreads, maxQueuedQueries, "store-query");
+    }
+
+    /**
+     * the scheduler the exchange rates are read from the global rate store and published back on. the rate tables
+     * are loaded while queries on the store query scheduler wait for them, so they get a pool of their own and a
+     * query holding every store query thread can't keep them from loading.
+     * @return the exchange rate scheduler, disposed with the context.
+     */
+    @Bean(destroyMethod = "dispose")
+    public Scheduler exchangeRateScheduler(){
+        return Schedulers.newBoundedElastic(exchangeRateThreads, maxQueuedQueries, "exchange-rate");
+    }
+}
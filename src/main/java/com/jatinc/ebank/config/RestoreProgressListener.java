@@ -0,0 +1,99 @@
+package com.jatinc.ebank.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.streams.processor.StateRestoreListener;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reports how far the restore of our stores from their changelogs is, as metrics tagged by store:
+ * <code>payment.store.restore.remaining</code> (records still to restore), <code>payment.store.restore.records</code>
+ * (records restored) and <code>payment.store.restore.duration</code> (per partition).
+ */
+@Component
+@Slf4j
+public class RestoreProgressListener implements StateRestoreListener {
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, AtomicLong> remainingByStore = new ConcurrentHashMap<>();
+    private final Map<TopicPartition, AtomicLong> remainingByPartition = new ConcurrentHashMap<>();
+    private final Map<TopicPartition, Long> restoreStarts = new ConcurrentHashMap<>();
+    private final Map<String, Counter> restoredByStore = new ConcurrentHashMap<>();
+    private final Map<String, Timer> restoreDurationByStore = new ConcurrentHashMap<>();
+
+    @Autowired
+    public RestoreProgressListener(MeterRegistry meterRegistry){
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public void onRestoreStart(TopicPartition topicPartition, String storeName, long startingOffset,
+                               long endingOffset){
+        long toRestore = Math.max(0, endingOffset - startingOffset);
+        log.info("Restoring {} records of {} from {}", toRestore, storeName, topicPartition);
+
+        remainingByPartition.put(topicPartition, new AtomicLong(toRestore));
+        remaining(storeName).addAndGet(toRestore);
+        restoreStarts.put(topicPartition, System.nanoTime());
+    }
+
+    @Override
+    public void onBatchRestored(TopicPartition topicPartition, String storeName, long batchEndOffset,
+                                long numRestored){
+        AtomicLong partitionRemaining = remainingByPartition.get(topicPartition);
+        if(partitionRemaining != null){
+            partitionRemaining.addAndGet(-numRestored);
+        }
+        remaining(storeName).addAndGet(-numRestored);
+        restoredByStore.computeIfAbsent(storeName, name -> Counter.builder("payment.store.restore.records")
+                .description("records restored from the changelogs")
+                .tag("store", name)
+                .register(meterRegistry))
+                .increment(numRestored);
+    }
+
+    @Override
+    public void onRestoreEnd(TopicPartition topicPartition, String storeName, long totalRestored){
+//        offsets of compacted or transaction marker records are never restored, drop what is left of the partition
+        AtomicLong partitionRemaining = remainingByPartition.remove(topicPartition);
+        if(partitionRemaining != null){
+            remaining(storeName).addAndGet(-partitionRemaining.get());
+        }
+
+        Long start = restoreStarts.remove(topicPartition);
+        if(start != null){
+            Duration duration = Duration.ofNanos(System.nanoTime() - start);
+            restoreDurationByStore.computeIfAbsent(storeName, name -> Timer.builder("payment.store.restore.duration")
+                    .description("time to restore a partition of a store")
+                    .tag("store", name)
+                    .register(meterRegistry))
+                    .record(duration);
+            log.info("Restored {} records of {} from {} in {}", totalRestored, storeName, topicPartition, duration);
+        }
+    }
+
+    /**
+     * @return the records that still have to be restored, by store.
+     */
+    public Map<String, Long> getRemainingRecords(){
+        Map<String, Long> remaining = new TreeMap<>();
+        remainingByStore.forEach((storeName, records) -> remaining.put(storeName, records.get()));
+        return remaining;
+    }
+
+    private AtomicLong remaining(String storeName){
+        return remainingByStore.computeIfAbsent(storeName, name -> meterRegistry.gauge(
+                "payment.store.restore.remaining", Tags.of("store", name), new AtomicLong()));
+    }
+}
@@ -0,0 +1,66 @@
+package com.jatinc.ebank.config;
+
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.streams.StreamsConfig;
+
+import java.util.Properties;
+
+/**
+ * Named sets of kafka streams settings, chosen with <code>payment.streams.profile</code>. every setting of a profile
+ * can still be overridden one by one, see <code>PaymentStreamConfig</code>.
+ */
+public enum StreamsProfile {
+    /**
+     * every payment is written to the stores and sent to the changelogs right away, so aggregates are visible
+     * to queries (and to other instances) as soon as possible. this is how the application always ran: only the
+     * record cache is turned off, everything else (the commit interval included, which is 100ms under
+     * <code>exactly_once_v2</code>) is left to the kafka streams defaults.
+     */
+    LOW_LATENCY(0L, null, null, null, null, null),
+
+    /**
+     * updates of the same month are merged in the record cache and only flushed on commit, and the changelog
+     * producers send large compressed batches. far fewer store writes and changelog records per payment, at the
+     * cost of aggregates reaching the changelogs (and the cache flush downstream) up to a commit interval later.
+     */
+    HIGH_THROUGHPUT(64L * 1024 * 1024, 4, 10_000L, 50L, 256 * 1024, "lz4");
+
+//    a setting that is null is not set by the profile
+    private final Long cacheMaxBytes;
+    private final Integer streamThreads;
+    private final Long commitIntervalMs;
+    private final Long producerLingerMs;
+    private final Integer producerBatchSize;
+    private final String producerCompression;
+
+    StreamsProfile(Long cacheMaxBytes, Integer streamThreads, Long commitIntervalMs, Long producerLingerMs,
+                   Integer producerBatchSize, String producerCompression){
+        this.cacheMaxBytes = cacheMaxBytes;
+        this.streamThreads = streamThreads;
+        this.commitIntervalMs = commitIntervalMs;
+        this.producerLingerMs = producerLingerMs;
+        this.producerBatchSize = producerBatchSize;
+        this.producerCompression = producerCompression;
+    }
+
+    /**
+     * add the settings of the profile to the kafka streams configuration
+     * @param properties - the configuration of kafka streams
+     */
+    public void apply(Properties properties){
+        putIfSet(properties, StreamsConfig.CACHE_MAX_BYTES_BUFFERING_CONFIG, cacheMaxBytes);
+        putIfSet(properties, StreamsConfig.NUM_STREAM_THREADS_CONFIG, streamThreads);
+        putIfSet(properties, StreamsConfig.COMMIT_INTERVAL_MS_CONFIG, commitIntervalMs);
+//        the producers of kafka streams write our changelog and repartition topics
+        putIfSet(properties, StreamsConfig.producerPrefix(ProducerConfig.LINGER_MS_CONFIG), producerLingerMs);
+        putIfSet(properties, StreamsConfig.producerPrefix(ProducerConfig.BATCH_SIZE_CONFIG), producerBatchSize);
+        putIfSet(properties, StreamsConfig.producerPrefix(ProducerConfig.COMPRESSION_TYPE_CONFIG),
+                producerCompression);
+    }
+
+    private static void putIfSet(Properties properties, String key, Object value){
+        if(value != null){
+            properties.put(key, value);
+        }
+    }
+}
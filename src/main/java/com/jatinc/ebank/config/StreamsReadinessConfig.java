@@ -0,0 +1,49 @@
+package com.jatinc.ebank.config;
+
+import org.springframework.boot.actuate.availability.ReadinessStateHealthIndicator;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.availability.ApplicationAvailability;
+import org.springframework.boot.availability.AvailabilityState;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class StreamsReadinessConfig {
+
+    /**
+     * replaces the readiness indicator of spring boot, so <code>/actuator/health/readiness</code> only reports the
+     * instance as ready once our stores can be queried and no traffic is routed to it while they are restoring.
+     * @param applicationAvailability - the availability of the application itself
+     * @param streamsStateListener - the state of kafka streams
+     * @return the readiness indicator.
+     */
+    @Bean("readinessStateHealthIndicator")
+    public ReadinessStateHealthIndicator readinessStateHealthIndicator(ApplicationAvailability applicationAvailability,
+                                                                       StreamsStateListener streamsStateListener){
+        return new ReadinessStateHealthIndicator(applicationAvailability) {
+            @Override
+            protected AvailabilityState getState(ApplicationAvailability availability){
+                return streamsStateListener.isQueryable()
+                        ? availability.getReadinessState()
+                        : ReadinessState.REFUSING_TRAFFIC;
+            }
+        };
+    }
+
+    /**
+     * the state of kafka streams and the restore progress of our stores, under <code>/actuator/health</code>
+     * @param streamsStateListener - the state of kafka streams
+     * @param restoreProgressListener - the restore progress of our stores
+     * @return the kafka streams health indicator.
+     */
+    @Bean
+    public HealthIndicator kafkaStreamsHealthIndicator(StreamsStateListener streamsStateListener,
+                                                       RestoreProgressListener restoreProgressListener){
+        return () -> (streamsStateListener.isQueryable() ? Health.up() : Health.outOfService())
+                .withDetail("state", streamsStateListener.getState())
+                .withDetail("remainingRestoreRecords", restoreProgressListener.getRemainingRecords())
+                .build();
+    }
+}
@@ -0,0 +1,40 @@
+package com.jatinc.ebank.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.streams.KafkaStreams;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps track of the state of kafka streams, to tell whether our stores can be queried.
+ *
+ * the stores are only complete once kafka streams reached <code>RUNNING</code> the first time, before that they
+ * are still being restored from their changelogs. later rebalances don't count, queries are answered from the
+ * (possibly stale) local copy in the meantime.
+ */
+@Component
+@Slf4j
+public class StreamsStateListener implements KafkaStreams.StateListener {
+
+    private volatile KafkaStreams.State state = KafkaStreams.State.CREATED;
+    private volatile boolean restored;
+
+    @Override
+    public void onChange(KafkaStreams.State newState, KafkaStreams.State oldState){
+        log.info("Kafka streams changed from {} to {}", oldState, newState);
+        state = newState;
+        if(newState == KafkaStreams.State.RUNNING){
+            restored = true;
+        }
+    }
+
+    /**
+     * @return whether the stores have been restored and kafka streams is still running (or rebalancing).
+     */
+    public boolean isQueryable(){
+        return restored && (state == KafkaStreams.State.RUNNING || state == KafkaStreams.State.REBALANCING);
+    }
+
+    public KafkaStreams.State getState(){
+        return state;
+    }
+}
@@ -0,0 +1,181 @@
+package com.jatinc.ebank.controller;
+
+import com.jatinc.ebank.dto.RequestBatchItemDTO;
+import com.jatinc.ebank.service.BalanceService;
+import com.jatinc.ebank.service.BatchQueryService;
+import com.jatinc.ebank.service.PaymentService;
+import com.jatinc.ebank.service.RemoteQueryService;
+import com.jatinc.ebank.service.SpendingService;
+import com.jatinc.ebank.topology.SpendingWindow;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Endpoints other instances of the application use to query the stores of this instance. they only answer from
+ * the local stores and never forward the query again.
+ */
+@RestController
+@RequestMapping("/internal")
+@Slf4j
+public class InternalQueryController {
+
+    private final PaymentService paymentService;
+    private final BalanceService balanceService;
+    private final SpendingService spendingService;
+    private final BatchQueryService batchQueryService;
+    private final RemoteQueryService remoteQueryService;
+
+    @Autowired
+    public InternalQueryController(PaymentService paymentService, BalanceService balanceService,
+                                   SpendingService spendingService, BatchQueryService batchQueryService,
+                                   RemoteQueryService remoteQueryService){
+        this.paymentService = paymentService;
+        this.balanceService = balanceService;
+        this.spendingService = spendingService;
+        this.batchQueryService = batchQueryService;
+        this.remoteQueryService = remoteQueryService;
+    }
+
+    /**
+     * Get the transactions of an iban account in a month from the local stores
+     * @param secret - the secret shared between our instances
+     * @return JSON in the same format as <code>/api/transactions</code>.
+     */
+    @GetMapping(value="/transactions", produces = "application/json")
+    public Mono<ResponseEntity<Map<String, Object>>> getLocalMonthTransactions(
+            @RequestHeader(name=RemoteQueryService.INTERNAL_SECRET_HEADER, required=false) String secret,
+            @RequestParam(name="iban") String iBan,
+            @RequestParam(name="month") @DateTimeFormat(pattern="yyyy-MM") YearMonth month,
+            @RequestParam(name="page", defaultValue="1") int page,
+            @RequestParam(name="size", defaultValue="20") int size,
+            @RequestParam(name="cursor", required=false) String cursor,
+            @RequestParam(name="currency", required=false) String currency,
+            @RequestParam(name="stale", defaultValue="false") boolean staleAllowed){
+
+        if(!remoteQueryService.isInternalSecret(secret)){
+            return Mono.just(ResponseEntity.status(HttpStatus.FORBIDDEN).build());
+        }
+
+        log.debug("Internal request for user: {} for data in the month: {}", iBan, month);
+
+        return paymentService.getLocalUserTransactionsByMonthAsync(iBan, month, page, size, cursor, currency,
+                        staleAllowed)
+                .map(ResponseEntity::ok);
+    }
+
+    /**
+     * Stream the transactions of an iban account in a month from the local stores
+     * @param secret - the secret shared between our instances
+     * @return newline delimited JSON in the same format as <code>/api/transactions/stream</code>.
+     */
+    @GetMapping(value="/transactions/stream", produces = PaymentController.NDJSON)
+    public ResponseEntity<StreamingResponseBody> streamLocalMonthTransactions(
+            @RequestHeader(name=RemoteQueryService.INTERNAL_SECRET_HEADER, required=false) String secret,
+            @RequestParam(name="iban") String iBan,
+            @RequestParam(name="month") @DateTimeFormat(pattern="yyyy-MM") YearMonth month,
+            @RequestParam(name="cursor", required=false) String cursor,
+            @RequestParam(name="currency", required=false) String currency,
+            @RequestParam(name="stale", defaultValue="false") boolean staleAllowed){
+
+        if(!remoteQueryService.isInternalSecret(secret)){
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+
+        log.debug("Internal streamed request for user: {} for data in the month: {}", iBan, month);
+
+        StreamingResponseBody body = outputStream -> paymentService.writeLocalUserTransactionsByMonth(iBan, month,
+                cursor, currency, staleAllowed, outputStream);
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(PaymentController.NDJSON))
+                .body(body);
+    }
+
+    /**
+     * Get the balance of an iban account over a range of days from the local stores
+     * @param secret - the secret shared between our instances
+     * @return JSON in the same format as <code>/api/balance</code>.
+     */
+    @GetMapping(value="/balance", produces = "application/json")
+    public ResponseEntity<Map<String, Object>> getLocalBalance(
+            @RequestHeader(name=RemoteQueryService.INTERNAL_SECRET_HEADER, required=false) String secret,
+            @RequestParam(name="iban") String iBan,
+            @RequestParam(name="from") @DateTimeFormat(iso=DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(name="to") @DateTimeFormat(iso=DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(name="stale", defaultValue="false") boolean staleAllowed){
+
+        if(!remoteQueryService.isInternalSecret(secret)){
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+
+        log.debug("Internal balance request for user: {} from {} to {}", iBan, from, to);
+
+        return ResponseEntity.ok(balanceService.getLocalBalance(iBan, from, to, staleAllowed));
+    }
+
+    /**
+     * Get the spending of an iban account from the local stores
+     * @param secret - the secret shared between our instances
+     * @return JSON in the same format as <code>/api/spending</code>.
+     */
+    @GetMapping(value="/spending", produces = "application/json")
+    public ResponseEntity<Map<String, Object>> getLocalSpending(
+            @RequestHeader(name=RemoteQueryService.INTERNAL_SECRET_HEADER, required=false) String secret,
+            @RequestParam(name="iban") String iBan,
+            @RequestParam(name="window") SpendingWindow window,
+            @RequestParam(name="from") Instant from,
+            @RequestParam(name="to") Instant to,
+            @RequestParam(name="stale", defaultValue="false") boolean staleAllowed){
+
+        if(!remoteQueryService.isInternalSecret(secret)){
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+
+        log.debug("Internal spending request for user: {} by {} from {} to {}", iBan, window, from, to);
+
+        return ResponseEntity.ok(spendingService.getLocalSpending(iBan, window, from, to, staleAllowed));
+    }
+
+    /**
+     * Get the transactions of many iban accounts and months from the local stores
+     * @param secret - the secret shared between our instances
+     * @param items - the accounts and months to query
+     * @return JSON array with a result per item in the format of <code>/api/transactions/batch</code>, indexed by
+     * position in <code>items</code>.
+     */
+    @PostMapping(value="/transactions/batch", produces = "application/json")
+    public Mono<ResponseEntity<List<Map<String, Object>>>> getLocalBatchTransactions(
+            @RequestHeader(name=RemoteQueryService.INTERNAL_SECRET_HEADER, required=false) String secret,
+            @RequestParam(name="stale", defaultValue="false") boolean staleAllowed,
+            @RequestBody List<RequestBatchItemDTO> items){
+
+        if(!remoteQueryService.isInternalSecret(secret)){
+            return Mono.just(ResponseEntity.status(HttpStatus.FORBIDDEN).build());
+        }
+
+        log.debug("Internal batch request for {} items", items.size());
+
+        return batchQueryService.getLocalUserTransactionsBatch(items, staleAllowed)
+                .collectList()
+                .map(ResponseEntity::ok);
+    }
+}
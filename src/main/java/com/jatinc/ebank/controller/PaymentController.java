@@ -1,17 +1,41 @@
 package com.jatinc.ebank.controller;
 
+import com.jatinc.ebank.dto.RequestBalanceDTO;
+import com.jatinc.ebank.dto.RequestBatchDTO;
+import com.jatinc.ebank.dto.RequestSpendingDTO;
 import com.jatinc.ebank.dto.RequestTransactionDTO;
-import com.jatinc.ebank.service.JwtService;
+import com.jatinc.ebank.service.BalanceService;
+import com.jatinc.ebank.service.BatchQueryService;
 import com.jatinc.ebank.service.PaymentService;
+import com.jatinc.ebank.service.ResponseCache;
+import com.jatinc.ebank.service.SpendingService;
+import com.jatinc.ebank.topology.SpendingWindow;
+import com.jatinc.ebank.util.MoneyUtil;
+import com.jatinc.ebank.util.TransactionCursor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.util.DigestUtils;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
 import java.util.Map;
 
 @RestController
@@ -19,42 +43,259 @@ import java.util.Map;
 @Slf4j
 public class PaymentController {
 
+    public static final String NDJSON = "application/x-ndjson";
+
+    /**
+     * responses may be kept by the client, but have to be revalidated with their <code>ETag</code> before every use
+     */
+    private static final CacheControl REVALIDATE = CacheControl.noCache().cachePrivate();
+
+    @Value("${payment.query.max-page-size:1000}")
+    private int maxPageSize;
+
+    @Value("${payment.batch.max-items:1000}")
+    private int maxBatchItems;
+
+    @Value("${payment.spending.retention:30d}")
+    private Duration spendingRetention;
+
+    @Value("${payment.spending.max-windows:1000}")
+    private int maxSpendingWindows;
+
     private final PaymentService paymentService;
-    private final JwtService jwtService;
+    private final BalanceService balanceService;
+    private final SpendingService spendingService;
+    private final BatchQueryService batchQueryService;
 
     @Autowired
-    public PaymentController(PaymentService paymentService, JwtService jwtService){
+    public PaymentController(PaymentService paymentService, BalanceService balanceService,
+                             SpendingService spendingService, BatchQueryService batchQueryService){
         this.paymentService = paymentService;
-        this.jwtService = jwtService;
+        this.balanceService = balanceService;
+        this.spendingService = spendingService;
+        this.batchQueryService = batchQueryService;
     }
 
     /**
      * Get Request function to get all transactions related to a user in a given month
-     * @param token - the authenticated token of the user
+     * @param iBan - the iban of the authenticated user, resolved from the token by <code>JwtFilter</code>
      * @param query - the request body in the format of <code>RequestTransactionDTO</code>
-     * @return JSON containing all the transactions in the requested month, the total debited and credited amount, and
-     * the total number of pages.
+     * @param ifNoneMatch - the <code>ETag</code>s of the responses the client already has
+     * @return JSON containing all the transactions in the requested month, the total debited and credited amount,
+     * the total number of pages and the <code>next</code> cursor to fetch the page after this one. the
+     * <code>ETag</code> changes with every transaction of the month, when it matches <code>If-None-Match</code>
+     * the response is a <code>304 Not Modified</code> without a body.
      */
     @GetMapping(value="/transactions", produces = "application/json")
-    public ResponseEntity<Map<String, Object>> getMonthTransactionsById(@RequestHeader(name="Authorization")
-                                                                            String token,
-                                                                        @RequestBody RequestTransactionDTO query){
-
-        String iBan = jwtService.extractUserKey(token.substring(7));
+    public Mono<ResponseEntity<Map<String, Object>>> getMonthTransactionsById(
+            @AuthenticationPrincipal String iBan,
+            @RequestBody RequestTransactionDTO query,
+            @RequestHeader(name=HttpHeaders.IF_NONE_MATCH, required=false) String ifNoneMatch){
 
         if(iBan == null){
-            return (ResponseEntity<Map<String, Object>>) ResponseEntity.badRequest();
+            return Mono.just(ResponseEntity.status(HttpStatus.UNAUTHORIZED).build());
         }
 
         log.info("Request '/api/transactions' from user: {} for data in the month: {}", iBan, query.getMonth().toString());
 
-        Map<String, Object> response = paymentService.getUserTransactionsByMonth(iBan, query.getMonth(),
-                query.getPage(), query.getSize(), query.getCurrency());
+        int page = Math.max(query.getPage(), 1);
+        int size = Math.max(query.getSize(), 1);
+        if(size > maxPageSize){
+//            a page is copied into one response, larger ones have to be streamed or fetched with the cursor
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+        if(query.getCurrency() != null && !MoneyUtil.isCurrency(query.getCurrency())){
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+        String tagSource = iBan + "|" + query.getMonth() + "|"
+                + ResponseCache.queryKey(page, size, query.getCursor(), query.getCurrency());
+
+//        the servlet thread is released here, the response is written when the query completes
+        Mono<ResponseEntity<Map<String, Object>>> response = paymentService.getUserTransactionsByMonthAsync(iBan,
+                        query.getMonth(), page, size, query.getCursor(), query.getCurrency())
+                .map(result -> {
+                    if(result.isEmpty()){
+                        return ResponseEntity.notFound().<Map<String, Object>>build();
+                    }
+                    if(!(result.get("version") instanceof Number version)){
+                        return ResponseEntity.ok(result);
+                    }
+                    String eTag = eTag(tagSource, version.longValue());
+                    return matches(ifNoneMatch, eTag)
+                            ? notModified(eTag)
+                            : ResponseEntity.ok().eTag(eTag).cacheControl(REVALIDATE).body(result);
+                });
+        if(ifNoneMatch == null){
+            return response;
+        }
+
+//        when we own the month its version is enough to answer a revalidation, without reading the transactions
+        return paymentService.getMonthVersionAsync(iBan, query.getMonth())
+                .map(version -> eTag(tagSource, version))
+                .filter(eTag -> matches(ifNoneMatch, eTag))
+                .map(PaymentController::notModified)
+                .switchIfEmpty(response);
+    }
+
+    private static String eTag(String tagSource, long version){
+        return "\"" + version + "-" + DigestUtils.md5DigestAsHex(tagSource.getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+
+    private static boolean matches(String ifNoneMatch, String eTag){
+        if(ifNoneMatch == null){
+            return false;
+        }
+        for(String tag : ifNoneMatch.split(",")){
+            String candidate = tag.trim();
+            if(candidate.equals("*") || candidate.equals(eTag) || candidate.equals("W/" + eTag)){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static ResponseEntity<Map<String, Object>> notModified(String eTag){
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).cacheControl(REVALIDATE).build();
+    }
+
+    /**
+     * Get Request function to stream all transactions related to a user in a given month, for months too large to
+     * be sent as a single JSON document
+     * @param iBan - the iban of the authenticated user, resolved from the token by <code>JwtFilter</code>
+     * @param query - the request body in the format of <code>RequestTransactionDTO</code>, the page and size are
+     *              ignored and the cursor can be used to resume after a previous response
+     * @return newline delimited JSON with one transaction per line ordered by date, and a last line with the
+     * <code>summary</code> of the month.
+     */
+    @GetMapping(value="/transactions/stream", produces = NDJSON)
+    public ResponseEntity<StreamingResponseBody> streamMonthTransactionsById(@AuthenticationPrincipal String iBan,
+                                                                             @RequestBody RequestTransactionDTO query){
+
+        if(iBan == null){
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        if(query.getCurrency() != null && !MoneyUtil.isCurrency(query.getCurrency())){
+            return ResponseEntity.badRequest().build();
+        }
+        if(query.getCursor() != null){
+//            the status can't change once the first line is written, so a bad cursor is rejected up front
+            try{
+                TransactionCursor.decode(query.getCursor());
+            }catch(IllegalArgumentException ex){
+                return ResponseEntity.badRequest().build();
+            }
+        }
+
+        log.info("Request '/api/transactions/stream' from user: {} for data in the month: {}", iBan, query.getMonth().toString());
+
+        StreamingResponseBody body = outputStream -> paymentService.streamUserTransactionsByMonth(iBan,
+                query.getMonth(), query.getCursor(), query.getCurrency(), outputStream);
 
-        if(response.isEmpty()){
-            return (ResponseEntity<Map<String, Object>>) ResponseEntity.notFound();
-        }else{
-            return ResponseEntity.ok(response);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(NDJSON))
+                .body(body);
+    }
+
+    /**
+     * Get Request function to get the balance of the user at the end of a day, or its balance curve over a range of
+     * days
+     * @param iBan - the iban of the authenticated user, resolved from the token by <code>JwtFilter</code>
+     * @param query - the request body in the format of <code>RequestBalanceDTO</code>, either a <code>date</code> or
+     *              a <code>from</code> and <code>to</code> range
+     * @return JSON with the closing <code>balance</code> of the (last) day in every currency of the account and the
+     * <code>balances</code> curve, the balances of the first day and of every later day in the range with
+     * transactions.
+     */
+    @GetMapping(value="/balance", produces = "application/json")
+    public Mono<ResponseEntity<Map<String, Object>>> getBalanceById(@AuthenticationPrincipal String iBan,
+                                                                    @RequestBody RequestBalanceDTO query){
+
+        if(iBan == null){
+            return Mono.just(ResponseEntity.status(HttpStatus.UNAUTHORIZED).build());
+        }
+
+        LocalDate from = query.getDate() != null ? query.getDate() : query.getFrom();
+        LocalDate to = query.getDate() != null ? query.getDate() : query.getTo();
+        if(from == null || to == null || from.isAfter(to)){
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+
+        log.info("Request '/api/balance' from user: {} from {} to {}", iBan, from, to);
+
+        return balanceService.getBalanceAsync(iBan, from, to)
+                .map(result -> result.isEmpty()
+                        ? ResponseEntity.notFound().<Map<String, Object>>build()
+                        : ResponseEntity.ok(result));
+    }
+
+    /**
+     * Get Request function to get the spending of a user in hourly, daily or rolling 24 hour windows
+     * @param iBan - the iban of the authenticated user, resolved from the token by <code>JwtFilter</code>
+     * @param query - the request body in the format of <code>RequestSpendingDTO</code>, without <code>from</code>
+     *              and <code>to</code> it returns the windows that are open now
+     * @return JSON with the <code>windows</code> that start within the range and had transactions, each with its
+     * <code>start</code>, <code>end</code>, <code>count</code>, <code>debited</code> total and <code>max-debit</code>,
+     * the amounts by currency.
+     */
+    @GetMapping(value="/spending", produces = "application/json")
+    public Mono<ResponseEntity<Map<String, Object>>> getSpendingById(@AuthenticationPrincipal String iBan,
+                                                                     @RequestBody RequestSpendingDTO query){
+
+        if(iBan == null){
+            return Mono.just(ResponseEntity.status(HttpStatus.UNAUTHORIZED).build());
         }
+        if(spendingRetention.isZero()){
+//            the spending aggregations are turned off, there are no stores to query
+            return Mono.just(ResponseEntity.notFound().build());
+        }
+
+        SpendingWindow window = query.getWindow() != null ? query.getWindow() : SpendingWindow.HOUR;
+        Instant to = query.getTo() != null ? query.getTo() : Instant.now();
+        Instant from = query.getFrom() != null ? query.getFrom() : to.minus(window.getSize());
+        if(from.isAfter(to)
+                || Duration.between(from, to).dividedBy(window.getAdvance()) >= maxSpendingWindows){
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+
+        log.info("Request '/api/spending' from user: {} by {} from {} to {}", iBan, window, from, to);
+
+        return spendingService.getSpendingAsync(iBan, window, from, to)
+                .map(result -> result.isEmpty()
+                        ? ResponseEntity.notFound().<Map<String, Object>>build()
+                        : ResponseEntity.ok(result));
+    }
+
+    /**
+     * Post Request function to get the transactions of many accounts and months in one call, for statement
+     * generation. a token may only query the months of its own account, the items of other accounts are answered
+     * with a 403.
+     * @param iBan - the iban of the authenticated user, resolved from the token by <code>JwtFilter</code>
+     * @param batch - the request body in the format of <code>RequestBatchDTO</code>, at most
+     *              <code>payment.batch.max-items</code> items
+     * @return newline delimited JSON with one line per item as soon as it is answered, with the <code>index</code>
+     * of the item, its <code>iban</code> and <code>month</code>, the <code>status</code> of the item and the
+     * <code>result</code> in the same format as <code>/api/transactions</code>.
+     */
+    @PostMapping(value="/transactions/batch", produces = NDJSON)
+    public ResponseEntity<Flux<Map<String, Object>>> getBatchTransactions(@AuthenticationPrincipal String iBan,
+                                                                          @RequestBody RequestBatchDTO batch){
+
+        if(iBan == null){
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        if(batch.getItems() == null || batch.getItems().size() > maxBatchItems){
+//            one caller can't hold the store query threads for an unbounded batch, larger ones have to be split
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
+        }
+        if(batch.getItems().stream().anyMatch(item -> item != null && (item.getSize() > maxPageSize
+                || item.getCurrency() != null && !MoneyUtil.isCurrency(item.getCurrency())))){
+            return ResponseEntity.badRequest().build();
+        }
+
+        log.info("Request '/api/transactions/batch' from user: {} for {} items", iBan, batch.getItems().size());
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(NDJSON))
+                .body(batchQueryService.getUserTransactionsBatch(batch.getItems(), iBan::equals));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,28 @@
+package com.jatinc.ebank.controller;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.streams.errors.InvalidStateStoreException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+/**
+ * Answers queries that hit a state store which is restoring or migrating to another instance with
+ * <code>503 Service Unavailable</code>, so clients (and other instances) retry instead of seeing an empty month.
+ */
+@RestControllerAdvice
+@Slf4j
+public class StoreUnavailableHandler {
+
+    private static final String RETRY_AFTER_SECONDS = "1";
+
+    @ExceptionHandler(InvalidStateStoreException.class)
+    public ResponseEntity<Void> storeUnavailable(InvalidStateStoreException ex){
+        log.debug("State store not available", ex);
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS)
+                .build();
+    }
+}
@@ -0,0 +1,172 @@
+package com.jatinc.ebank.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The closing balances of an iban account at the end of every day of a month it had transactions, per currency.
+ *
+ * <code>days</code> holds the days of the month with transactions, ordered, and every currency keeps its balance at
+ * the start of the month and its closing balance of each of those days at the same index, so the balance at any day
+ * is a binary search for the last day on or before it. a month has every currency of the account, the ones without
+ * transactions in the month simply keep their opening balance. balances are in minor units of their currency,
+ * credited amounts add to the balance and debited amounts take from it, starting at zero before the first
+ * transaction of the account.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class BalanceMonthDTO {
+
+    private String iBan;
+
+    @JsonFormat(shape=JsonFormat.Shape.STRING,
+            pattern = "yyyy-MM")
+    private YearMonth month;
+
+    private long count;
+
+    @Builder.Default
+    private int[] days = new int[0];
+
+    @Builder.Default
+    private Map<String, CurrencyBalances> currencies = new TreeMap<>();
+
+    /**
+     * start a month of an account from the closing balances of the month before it
+     * @param iBan - the iban account
+     * @param month - the month to start
+     * @param previous - the latest earlier month of the account, or <code>null</code> if there is none
+     * @return a month without transactions, with the balances of <code>previous</code> as opening balances.
+     */
+    public static BalanceMonthDTO open(String iBan, YearMonth month, BalanceMonthDTO previous){
+        BalanceMonthDTO balanceMonth = new BalanceMonthDTO();
+        balanceMonth.setIBan(iBan);
+        balanceMonth.setMonth(month);
+        if(previous != null){
+            previous.closingBalances().forEach((currency, balance) ->
+                    balanceMonth.getCurrencies().put(currency, new CurrencyBalances(balance, new long[0])));
+        }
+        return balanceMonth;
+    }
+
+    /**
+     * add a transaction of the month to the balances, positive amounts are debited and negative amounts are
+     * credited. a transaction dated before the last day moves the balance of every day after it as well.
+     * @param transaction - the transaction to add
+     * @return the updated month.
+     */
+    public BalanceMonthDTO process(PaymentDTO transaction){
+        int day = transaction.getTransactionDate().getDayOfMonth();
+        this.iBan = transaction.getIBan();
+        this.month = YearMonth.from(transaction.getTransactionDate());
+        this.count++;
+
+        CurrencyBalances balances = currencyBalances(transaction.getCurrency());
+        int index = Arrays.binarySearch(days, day);
+        if(index < 0){
+//            a new day closes with the balance of the day before it in every currency, the transaction is added below
+            index = -index - 1;
+            this.days = insert(days, index, day);
+            for(CurrencyBalances currencyBalances : currencies.values()){
+                currencyBalances.insertDay(index);
+            }
+        }
+
+        long[] closing = balances.getClosing();
+        long change = -transaction.getAmountMinor();
+        for(int i = index; i < closing.length; i++){
+            closing[i] += change;
+        }
+        return this;
+    }
+
+    /**
+     * move every balance of a currency in this month, for a transaction of an earlier month
+     * @param currency - the currency of the transaction
+     * @param change - the change of the balance in minor units
+     */
+    public void carry(String currency, long change){
+        CurrencyBalances balances = currencyBalances(currency);
+        balances.setOpening(balances.getOpening() + change);
+        long[] closing = balances.getClosing();
+        for(int i = 0; i < closing.length; i++){
+            closing[i] += change;
+        }
+    }
+
+    /**
+     * get the closing balances of a day
+     * @param day - the day of the month
+     * @return the balance of every currency in minor units, by currency.
+     */
+    public Map<String, Long> balancesAt(int day){
+        int index = indexAt(day);
+        Map<String, Long> balances = new LinkedHashMap<>();
+        currencies.forEach((currency, currencyBalances) -> balances.put(currency,
+                index < 0 ? currencyBalances.getOpening() : currencyBalances.getClosing()[index]));
+        return balances;
+    }
+
+    /**
+     * get the closing balances of the last day of the month
+     * @return the balance of every currency in minor units, by currency.
+     */
+    public Map<String, Long> closingBalances(){
+        return balancesAt(month.lengthOfMonth());
+    }
+
+    /**
+     * get the position of the last day with transactions on or before a day
+     * @param day - the day of the month
+     * @return index in <code>days</code> and the closing balances, or <code>-1</code> if there is none.
+     */
+    public int indexAt(int day){
+        int index = Arrays.binarySearch(days, day);
+        return index < 0 ? -index - 2 : index;
+    }
+
+    private CurrencyBalances currencyBalances(String currency){
+//        a currency the account never had before starts at zero on every day of the month
+        return currencies.computeIfAbsent(currency, key -> new CurrencyBalances(0, new long[days.length]));
+    }
+
+    private static int[] insert(int[] values, int index, int value){
+        int[] inserted = new int[values.length + 1];
+        System.arraycopy(values, 0, inserted, 0, index);
+        System.arraycopy(values, index, inserted, index + 1, values.length - index);
+        inserted[index] = value;
+        return inserted;
+    }
+
+    /**
+     * The balances of one currency in a month.
+     */
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class CurrencyBalances {
+
+        private long opening;
+
+        private long[] closing = new long[0];
+
+        void insertDay(int index){
+            long[] inserted = new long[closing.length + 1];
+            System.arraycopy(closing, 0, inserted, 0, index);
+            System.arraycopy(closing, index, inserted, index + 1, closing.length - index);
+            inserted[index] = index > 0 ? closing[index - 1] : opening;
+            this.closing = inserted;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.jatinc.ebank.dto;
 
+import com.fasterxml.jackson.annotation.JsonFormat;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -7,23 +8,54 @@ import lombok.NoArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
 import java.time.LocalDate;
+import java.time.YearMonth;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 
+/**
+ * All the transactions of an iban account in a single month, ordered by <code>TRANSACTION_ORDER</code>.
+ */
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
 @Builder
 @Slf4j
 public class BankAccountDTO {
+    public static final Comparator<PaymentDTO> TRANSACTION_ORDER = Comparator
+            .comparing(PaymentDTO::getTransactionDate)
+            .thenComparing(PaymentDTO::getPaymentId, Comparator.nullsFirst(Comparator.naturalOrder()));
+
     private String iBan;
+
+    @JsonFormat(shape=JsonFormat.Shape.STRING,
+            pattern = "yyyy-MM")
+    private YearMonth month;
+
     private List<PaymentDTO> transactions = new ArrayList<>();
     private LocalDate lastUpdate;
 
     public BankAccountDTO process(PaymentDTO transaction){
         this.iBan = transaction.getIBan();
-        this.transactions.add(transaction);
+        this.month = YearMonth.from(transaction.getTransactionDate());
+        int index = Collections.binarySearch(this.transactions, transaction, TRANSACTION_ORDER);
+        this.transactions.add(index >= 0 ? index + 1 : -index - 1, transaction);
         this.lastUpdate = LocalDate.now();
         return this;
     }
+
+    /**
+     * set the transactions of the month, sorting them first if they were stored before we kept them ordered
+     * @param transactions - the transactions
+     */
+    public void setTransactions(List<PaymentDTO> transactions){
+        for(int i = 1; i < transactions.size(); i++){
+            if(TRANSACTION_ORDER.compare(transactions.get(i - 1), transactions.get(i)) > 0){
+                transactions.sort(TRANSACTION_ORDER);
+                break;
+            }
+        }
+        this.transactions = transactions;
+    }
 }
@@ -0,0 +1,40 @@
+package com.jatinc.ebank.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+
+/**
+ * The exchange rates between two currencies for every day of a month.
+ *
+ * rates are fixed point numbers, see <code>MoneyUtil.toFixedPointRate</code>, and days without a rate are 0.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ExchangeRateTableDTO {
+    private String baseCurrency;
+
+    private String currency;
+
+    private YearMonth month;
+
+    private long[] dailyRates;
+
+    /**
+     * get the exchange rate of a day
+     * @param date - the day we need the rate for, has to be in the month of the table
+     * @return the fixed point exchange rate.
+     */
+    public long getRate(LocalDate date){
+        long rate = dailyRates[date.getDayOfMonth() - 1];
+        if(rate == 0){
+            throw new IllegalStateException("No exchange rate available from " + baseCurrency + " to " + currency
+                    + " for " + date);
+        }
+        return rate;
+    }
+}
@@ -0,0 +1,160 @@
+package com.jatinc.ebank.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Running totals of all the transactions of an iban account in a single month.
+ *
+ * the totals are kept per currency, in minor units of that currency, and also per day of the month so they can be
+ * converted with the exchange rate of each day without going through the transactions again. <code>currency</code>
+ * is the currency of the first transaction of the month, its totals are kept in the fields of the summary itself and
+ * the totals of any other currency in <code>otherCurrencies</code>, so amounts in different currencies are never
+ * added up.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class MonthlySummaryDTO {
+    public static final int MAX_DAYS_IN_MONTH = 31;
+
+    private String iBan;
+
+    @JsonFormat(shape=JsonFormat.Shape.STRING,
+            pattern = "yyyy-MM")
+    private YearMonth month;
+
+    private String currency;
+
+    private long count;
+
+    private long debitedMinor;
+
+    private long creditedMinor;
+
+    @Builder.Default
+    private long[] dailyDebitedMinor = new long[MAX_DAYS_IN_MONTH];
+
+    @Builder.Default
+    private long[] dailyCreditedMinor = new long[MAX_DAYS_IN_MONTH];
+
+    @Builder.Default
+    private Map<String, CurrencyTotals> otherCurrencies = new TreeMap<>();
+
+    @JsonFormat(shape=JsonFormat.Shape.STRING,
+            pattern = "yyyy-MM-dd")
+    private LocalDate firstTransactionDate;
+
+    @JsonFormat(shape=JsonFormat.Shape.STRING,
+            pattern = "yyyy-MM-dd")
+    private LocalDate lastTransactionDate;
+
+    /**
+     * add a transaction to the totals, positive amounts are debited and negative amounts are credited.
+     * @param transaction - the transaction to add
+     * @return the updated summary.
+     */
+    public MonthlySummaryDTO process(PaymentDTO transaction){
+        long amount = transaction.getAmountMinor();
+        LocalDate date = transaction.getTransactionDate();
+        int day = date.getDayOfMonth() - 1;
+
+        this.iBan = transaction.getIBan();
+        this.month = YearMonth.from(date);
+        if(this.currency == null){
+            this.currency = transaction.getCurrency();
+        }
+        this.count++;
+
+        String transactionCurrency = transaction.getCurrency();
+        if(transactionCurrency == null || transactionCurrency.equals(this.currency)){
+            if(amount > 0){
+                this.debitedMinor += amount;
+                this.dailyDebitedMinor[day] += amount;
+            }else if(amount < 0){
+                this.creditedMinor -= amount;
+                this.dailyCreditedMinor[day] -= amount;
+            }
+        }else{
+            this.otherCurrencies.computeIfAbsent(transactionCurrency, key -> new CurrencyTotals()).add(day, amount);
+        }
+
+        if(this.firstTransactionDate == null || date.isBefore(this.firstTransactionDate)){
+            this.firstTransactionDate = date;
+        }
+        if(this.lastTransactionDate == null || date.isAfter(this.lastTransactionDate)){
+            this.lastTransactionDate = date;
+        }
+        return this;
+    }
+
+    /**
+     * get the debited totals of each day by the currency they are in
+     * @return the daily debited totals of <code>currency</code> followed by those of the other currencies.
+     */
+    public Map<String, long[]> dailyDebitedByCurrency(){
+        Map<String, long[]> totals = new LinkedHashMap<>();
+        if(currency != null){
+            totals.put(currency, dailyDebitedMinor);
+        }
+        otherCurrencies.forEach((otherCurrency, otherTotals) ->
+                totals.put(otherCurrency, otherTotals.getDailyDebitedMinor()));
+        return totals;
+    }
+
+    /**
+     * get the credited totals of each day by the currency they are in
+     * @return the daily credited totals of <code>currency</code> followed by those of the other currencies.
+     */
+    public Map<String, long[]> dailyCreditedByCurrency(){
+        Map<String, long[]> totals = new LinkedHashMap<>();
+        if(currency != null){
+            totals.put(currency, dailyCreditedMinor);
+        }
+        otherCurrencies.forEach((otherCurrency, otherTotals) ->
+                totals.put(otherCurrency, otherTotals.getDailyCreditedMinor()));
+        return totals;
+    }
+
+    /**
+     * The totals of the transactions of a month in a currency other than the currency of the summary.
+     */
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class CurrencyTotals {
+
+        private long debitedMinor;
+
+        private long creditedMinor;
+
+        private long[] dailyDebitedMinor = new long[MAX_DAYS_IN_MONTH];
+
+        private long[] dailyCreditedMinor = new long[MAX_DAYS_IN_MONTH];
+
+        /**
+         * add an amount of a day, positive amounts are debited and negative amounts are credited
+         * @param day - the day of the month starting at 0
+         * @param amount - the amount in minor units
+         */
+        public void add(int day, long amount){
+            if(amount > 0){
+                debitedMinor += amount;
+                dailyDebitedMinor[day] += amount;
+            }else if(amount < 0){
+                creditedMinor -= amount;
+                dailyCreditedMinor[day] -= amount;
+            }
+        }
+    }
+}
@@ -2,7 +2,9 @@ package com.jatinc.ebank.dto;
 
 
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.jatinc.ebank.util.MoneyUtil;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -11,6 +13,13 @@ import lombok.ToString;
 
 import java.time.LocalDate;
 
+/**
+ * A single transaction of an iban account.
+ *
+ * the amount arrives as a string like <code>EUR 12.34</code>, and is parsed once by <code>normalize</code> into
+ * <code>amountMinor</code> (the amount in the minor units of the currency) and <code>currency</code>. everything
+ * after that works on the parsed amount, and the string is only formatted again when it gets rendered.
+ */
 @Builder
 @Data
 @NoArgsConstructor
@@ -22,6 +31,12 @@ public class PaymentDTO {
     @JsonProperty("amount")
     private String amount;
 
+    @JsonIgnore
+    private long amountMinor;
+
+    @JsonIgnore
+    private String currency;
+
     @JsonProperty("iban")
     private String iBan;
 
@@ -32,4 +47,62 @@ public class PaymentDTO {
 
     @JsonProperty("description")
     private String description;
+
+    /**
+     * parse the amount string into minor units and a currency code, if that hasn't happened yet. amounts that
+     * can't be parsed or aren't in an iso 4217 currency are left as they are, leaving <code>currency</code> as
+     * <code>null</code>.
+     * @return this payment.
+     */
+    public PaymentDTO normalize(){
+        if(this.currency == null && this.amount != null){
+            try{
+                String amountCurrency = MoneyUtil.parseCurrency(this.amount);
+                this.amountMinor = MoneyUtil.parseMinorUnits(this.amount, MoneyUtil.fractionDigits(amountCurrency));
+                this.currency = amountCurrency;
+                this.amount = null;
+            }catch(IllegalArgumentException | ArithmeticException | IndexOutOfBoundsException ex){
+//                keep the original string, the caller can tell by the missing currency
+                this.currency = null;
+            }
+        }
+        return this;
+    }
+
+    /**
+     * @return the amount as a string like <code>EUR 12.34</code>.
+     */
+    @JsonProperty("amount")
+    public String getAmount(){
+        return this.amount == null && this.currency != null
+                ? MoneyUtil.format(this.amountMinor, this.currency)
+                : this.amount;
+    }
+
+    public void setAmount(String amount){
+        this.amount = amount;
+        this.amountMinor = 0;
+        this.currency = null;
+    }
+
+    /**
+     * set the amount from its parsed form
+     * @param amountMinor - the amount in minor units of the currency
+     * @param currency - the iso 4217 currency code
+     */
+    public void setAmount(long amountMinor, String currency){
+        this.amount = null;
+        this.amountMinor = amountMinor;
+        this.currency = currency;
+    }
+
+    public long getAmountMinor(){
+        normalize();
+        return this.amountMinor;
+    }
+
+    public String getCurrency(){
+        normalize();
+        return this.currency;
+    }
 }
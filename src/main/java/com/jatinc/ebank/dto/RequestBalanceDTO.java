@@ -0,0 +1,29 @@
+package com.jatinc.ebank.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class RequestBalanceDTO {
+
+    /**
+     * the day to get the balance of, when set <code>from</code> and <code>to</code> are ignored
+     */
+    @JsonFormat(shape=JsonFormat.Shape.STRING,
+            pattern = "yyyy-MM-dd")
+    private LocalDate date;
+
+    @JsonFormat(shape=JsonFormat.Shape.STRING,
+            pattern = "yyyy-MM-dd")
+    private LocalDate from;
+
+    @JsonFormat(shape=JsonFormat.Shape.STRING,
+            pattern = "yyyy-MM-dd")
+    private LocalDate to;
+}
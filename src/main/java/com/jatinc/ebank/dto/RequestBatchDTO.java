@@ -0,0 +1,18 @@
+package com.jatinc.ebank.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The accounts and months of a <code>/api/transactions/batch</code> request.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class RequestBatchDTO {
+    private List<RequestBatchItemDTO> items = new ArrayList<>();
+}
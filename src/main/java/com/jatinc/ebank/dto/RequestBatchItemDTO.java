@@ -0,0 +1,45 @@
+package com.jatinc.ebank.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.YearMonth;
+
+/**
+ * One account and month of a <code>RequestBatchDTO</code>, with the same options as a
+ * <code>RequestTransactionDTO</code>.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class RequestBatchItemDTO {
+    @JsonProperty("iban")
+    private String iBan;
+
+    @JsonFormat(shape=JsonFormat.Shape.STRING,
+            pattern = "yyyy-MM")
+    private YearMonth month;
+
+    private Integer page = RequestTransactionDTO.DEFAULT_PAGE;
+
+    private Integer size = RequestTransactionDTO.DEFAULT_SIZE;
+
+    private String currency;
+
+    /**
+     * the <code>next</code> token of the previous page, when set it is used instead of <code>page</code>
+     */
+    private String cursor;
+
+//    a page or size sent as null gets the default instead of failing the request
+    public Integer getPage(){
+        return page == null ? RequestTransactionDTO.DEFAULT_PAGE : page;
+    }
+
+    public Integer getSize(){
+        return size == null ? RequestTransactionDTO.DEFAULT_SIZE : size;
+    }
+}
@@ -0,0 +1,26 @@
+package com.jatinc.ebank.dto;
+
+import com.jatinc.ebank.topology.SpendingWindow;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class RequestSpendingDTO {
+
+    private SpendingWindow window = SpendingWindow.HOUR;
+
+    /**
+     * the earliest start of a window, by default one window before <code>to</code>
+     */
+    private Instant from;
+
+    /**
+     * the latest start of a window, by default now
+     */
+    private Instant to;
+}
@@ -11,13 +11,30 @@ import java.time.YearMonth;
 @AllArgsConstructor
 @NoArgsConstructor
 public class RequestTransactionDTO {
+    public static final int DEFAULT_PAGE = 1;
+    public static final int DEFAULT_SIZE = 20;
+
     @JsonFormat(shape=JsonFormat.Shape.STRING,
             pattern = "yyyy-MM")
     private YearMonth month;
 
-    private Integer page;
+    private Integer page = DEFAULT_PAGE;
 
-    private Integer size;
+    private Integer size = DEFAULT_SIZE;
 
     private String currency;
+
+    /**
+     * the <code>next</code> token of the previous page, when set it is used instead of <code>page</code>
+     */
+    private String cursor;
+
+//    a page or size sent as null gets the default instead of failing the request
+    public Integer getPage(){
+        return page == null ? DEFAULT_PAGE : page;
+    }
+
+    public Integer getSize(){
+        return size == null ? DEFAULT_SIZE : size;
+    }
 }
@@ -0,0 +1,113 @@
+package com.jatinc.ebank.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Running totals of the transactions of an iban account within one time window, see <code>SpendingWindow</code>.
+ *
+ * the totals are kept per currency, in minor units of that currency. <code>currency</code> is the currency of the
+ * first transaction of the window, its totals are kept in the fields of the window itself and the totals of any
+ * other currency in <code>otherCurrencies</code>, the same way as <code>MonthlySummaryDTO</code>. <code>count</code>
+ * counts the transactions in every currency.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class SpendingDTO {
+
+    private String currency;
+
+    private long count;
+
+    private long debitedMinor;
+
+    private long maxDebitMinor;
+
+    @Builder.Default
+    private Map<String, CurrencyTotals> otherCurrencies = new TreeMap<>();
+
+    /**
+     * add a transaction to the totals of the window, positive amounts are debited and only those count as spending
+     * @param transaction - the transaction to add
+     * @return the updated totals.
+     */
+    public SpendingDTO process(PaymentDTO transaction){
+        long amount = transaction.getAmountMinor();
+
+        if(this.currency == null){
+            this.currency = transaction.getCurrency();
+        }
+        this.count++;
+
+        String transactionCurrency = transaction.getCurrency();
+        if(transactionCurrency == null || transactionCurrency.equals(this.currency)){
+            if(amount > 0){
+                this.debitedMinor += amount;
+                this.maxDebitMinor = Math.max(this.maxDebitMinor, amount);
+            }
+        }else{
+            this.otherCurrencies.computeIfAbsent(transactionCurrency, key -> new CurrencyTotals()).add(amount);
+        }
+        return this;
+    }
+
+    /**
+     * get the debited totals of the window by the currency they are in
+     * @return the debited total of <code>currency</code> followed by those of the other currencies.
+     */
+    public Map<String, Long> debitedByCurrency(){
+        Map<String, Long> totals = new LinkedHashMap<>();
+        if(currency != null){
+            totals.put(currency, debitedMinor);
+        }
+        otherCurrencies.forEach((otherCurrency, otherTotals) ->
+                totals.put(otherCurrency, otherTotals.getDebitedMinor()));
+        return totals;
+    }
+
+    /**
+     * get the largest single debit of the window by the currency it is in
+     * @return the largest debit in <code>currency</code> followed by those in the other currencies.
+     */
+    public Map<String, Long> maxDebitByCurrency(){
+        Map<String, Long> totals = new LinkedHashMap<>();
+        if(currency != null){
+            totals.put(currency, maxDebitMinor);
+        }
+        otherCurrencies.forEach((otherCurrency, otherTotals) ->
+                totals.put(otherCurrency, otherTotals.getMaxDebitMinor()));
+        return totals;
+    }
+
+    /**
+     * The totals of the transactions of a window in a currency other than the currency of the window.
+     */
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class CurrencyTotals {
+
+        private long debitedMinor;
+
+        private long maxDebitMinor;
+
+        /**
+         * add an amount, only positive amounts are debited and count as spending
+         * @param amount - the amount in minor units
+         */
+        public void add(long amount){
+            if(amount > 0){
+                debitedMinor += amount;
+                maxDebitMinor = Math.max(maxDebitMinor, amount);
+            }
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.jatinc.ebank.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A record of the <code>monthly-summaries</code> topic, the summary of an iban account in a month, keyed by
+ * <code>StoreKeys.monthKey</code>.
+ *
+ * <code>UPDATED</code> records carry the latest totals of a month, a burst of transactions on the account is only
+ * published once. a <code>CLOSED</code> record is published once a month is over and its grace period has passed,
+ * with the final totals of the month.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class SummaryEventDTO {
+
+    public enum Type {
+        UPDATED,
+        CLOSED
+    }
+
+    private Type type;
+
+    private MonthlySummaryDTO summary;
+}
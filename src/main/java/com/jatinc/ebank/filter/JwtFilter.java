@@ -1,10 +1,12 @@
 package com.jatinc.ebank.filter;
 
 import com.jatinc.ebank.service.JwtService;
+import io.jsonwebtoken.JwtException;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -14,7 +16,12 @@ import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
 
+/**
+ * Authenticates requests with a bearer token. the iban of the token becomes the principal of the authentication,
+ * so controllers can get it from the security context instead of parsing the token again.
+ */
 @Component
+@Slf4j
 public class JwtFilter extends OncePerRequestFilter {
 
     private final JwtService jwtService;
@@ -37,12 +44,18 @@ public class JwtFilter extends OncePerRequestFilter {
         }
 
         token = authHeader.substring(7);
-        userIBan = jwtService.extractUserKey(token);
+        try{
+            userIBan = jwtService.extractUserKey(token);
+        }catch(JwtException | IllegalArgumentException ex){
+            log.debug("Rejected bearer token", ex);
+            userIBan = null;
+        }
+
         if(userIBan != null){
             if(jwtService.isTokenValid(token)){
 
-                UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(token,
-                        null, null);
+                UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(userIBan,
+                        token, null);
 
                 authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
                 SecurityContextHolder.getContext().setAuthentication(authToken);
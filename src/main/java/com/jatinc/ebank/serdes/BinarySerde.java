@@ -0,0 +1,91 @@
+package com.jatinc.ebank.serdes;
+
+import com.jatinc.ebank.serdes.codec.BinaryCodec;
+import com.jatinc.ebank.serdes.codec.BinaryReader;
+import com.jatinc.ebank.serdes.codec.BinaryWriter;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.common.serialization.Serializer;
+
+/**
+ * Serde writing values in our compact binary format.
+ *
+ * every value starts with a magic byte and the schema version of its codec. values that start with
+ * <code>{</code> instead are json written by <code>JsonSerde</code>, and are read through it, so stores and topics
+ * can be switched over to this serde without migrating the data that is already there.
+ * @param <T> the type of the values
+ */
+public class BinarySerde<T> implements Serde<T> {
+    public static final int MAGIC_BYTE = 0xB1;
+    private static final int JSON_OBJECT_START = '{';
+    private static final int INITIAL_BUFFER_SIZE = 256;
+
+    private final Class<T> type;
+    private final BinaryCodec<T> codec;
+    private final Deserializer<T> jsonDeserializer;
+    private final SerdeMetrics metrics;
+
+    public BinarySerde(Class<T> type, BinaryCodec<T> codec){
+        this.type = type;
+        this.codec = codec;
+        this.jsonDeserializer = new JsonSerde<>(type).deserializer();
+        this.metrics = new SerdeMetrics(type, SerdeFormat.BINARY);
+    }
+
+    @Override
+    public Serializer<T> serializer(){
+        return (topic, data) -> serialize(data);
+    }
+
+    private byte[] serialize(T data){
+        if(data == null){
+            return null;
+        }
+
+        BinaryWriter writer = new BinaryWriter(INITIAL_BUFFER_SIZE);
+        writer.writeByte(MAGIC_BYTE);
+        writer.writeUnsignedVarLong(codec.currentVersion());
+        codec.write(data, writer);
+        byte[] bytes = writer.toByteArray();
+        metrics.recordSerialized(bytes);
+        return bytes;
+    }
+
+    @Override
+    public Deserializer<T> deserializer(){
+        return (topic, bytes) -> deserialize(topic, bytes);
+    }
+
+    private T deserialize(String topic, byte[] bytes){
+        if(bytes == null || bytes.length == 0){
+            return null;
+        }
+
+        int firstByte = bytes[0] & 0xFF;
+        if(firstByte == JSON_OBJECT_START){
+//            failures of the json serde are counted by the json serde
+            return jsonDeserializer.deserialize(topic, bytes);
+        }
+
+        try{
+            return read(firstByte, bytes);
+        }catch(SerializationException ex){
+            metrics.recordDeserializationFailure();
+            throw ex;
+        }
+    }
+
+    private T read(int firstByte, byte[] bytes){
+        if(firstByte != MAGIC_BYTE){
+            throw new SerializationException("Unknown format for " + type.getSimpleName() + ", first byte: " + firstByte);
+        }
+
+        BinaryReader reader = new BinaryReader(bytes, 1);
+        int version = reader.readUnsignedVarInt();
+        if(version < 1 || version > codec.currentVersion()){
+            throw new SerializationException("Unsupported " + type.getSimpleName() + " schema version: " + version);
+        }
+        return codec.read(reader, version);
+    }
+}
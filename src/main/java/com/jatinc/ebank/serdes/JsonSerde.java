@@ -3,16 +3,21 @@ package com.jatinc.ebank.serdes;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import lombok.SneakyThrows;
+import org.apache.kafka.common.errors.SerializationException;
 import org.apache.kafka.common.serialization.Deserializer;
 import org.apache.kafka.common.serialization.Serde;
 import org.apache.kafka.common.serialization.Serializer;
 
+import java.io.IOException;
+
 public class JsonSerde<T> implements Serde<T> {
     public static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
     private final Class<T> type;
+    private final SerdeMetrics metrics;
 
     public JsonSerde(Class<T> type){
         this.type = type;
+        this.metrics = new SerdeMetrics(type, SerdeFormat.JSON);
         OBJECT_MAPPER.registerModule(new JavaTimeModule());
     }
 
@@ -23,7 +28,9 @@ public class JsonSerde<T> implements Serde<T> {
 
     @SneakyThrows
     private byte[] serialize(T data){
-        return OBJECT_MAPPER.writeValueAsBytes(data);
+        byte[] bytes = OBJECT_MAPPER.writeValueAsBytes(data);
+        metrics.recordSerialized(bytes);
+        return bytes;
     }
 
     @Override
@@ -31,8 +38,12 @@ public class JsonSerde<T> implements Serde<T> {
         return (topic, bytes) -> deserialize(bytes);
     }
 
-    @SneakyThrows
     private T deserialize(byte[] bytes){
-        return OBJECT_MAPPER.readValue(bytes, type);
+        try{
+            return OBJECT_MAPPER.readValue(bytes, type);
+        }catch(IOException ex){
+            metrics.recordDeserializationFailure();
+            throw new SerializationException("Invalid json for " + type.getSimpleName(), ex);
+        }
     }
 }
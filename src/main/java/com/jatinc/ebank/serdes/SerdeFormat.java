@@ -0,0 +1,16 @@
+package com.jatinc.ebank.serdes;
+
+/**
+ * The wire formats we can use for the values of our topics and state stores.
+ */
+public enum SerdeFormat {
+    /**
+     * plain text json through jackson, see <code>JsonSerde</code>
+     */
+    JSON,
+
+    /**
+     * compact schema versioned binary, see <code>BinarySerde</code>. can still read values written as json.
+     */
+    BINARY
+}
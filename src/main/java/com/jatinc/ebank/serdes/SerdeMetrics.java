@@ -0,0 +1,41 @@
+package com.jatinc.ebank.serdes;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Metrics;
+
+/**
+ * Meters of a single serde, registered once when the serde is created so serializing only has to record a value.
+ *
+ * serdes are created by the topology outside of spring, so they use the global registry, which spring boot adds
+ * its own registries to. the tags are the value type and the format, so there are only a handful of series.
+ */
+final class SerdeMetrics {
+
+    private final DistributionSummary serializedSize;
+    private final Counter deserializationFailures;
+
+    SerdeMetrics(Class<?> type, SerdeFormat format){
+        this.serializedSize = DistributionSummary.builder("payment.serde.serialized.size")
+                .description("size of the serialized values")
+                .baseUnit("bytes")
+                .tag("type", type.getSimpleName())
+                .tag("format", format.name())
+                .register(Metrics.globalRegistry);
+        this.deserializationFailures = Counter.builder("payment.serde.deserialization.failures")
+                .description("values that could not be deserialized")
+                .tag("type", type.getSimpleName())
+                .tag("format", format.name())
+                .register(Metrics.globalRegistry);
+    }
+
+    void recordSerialized(byte[] bytes){
+        if(bytes != null){
+            serializedSize.record(bytes.length);
+        }
+    }
+
+    void recordDeserializationFailure(){
+        deserializationFailures.increment();
+    }
+}
@@ -0,0 +1,58 @@
+package com.jatinc.ebank.serdes;
+
+import com.jatinc.ebank.dto.BalanceMonthDTO;
+import com.jatinc.ebank.dto.BankAccountDTO;
+import com.jatinc.ebank.dto.MonthlySummaryDTO;
+import com.jatinc.ebank.dto.PaymentDTO;
+import com.jatinc.ebank.dto.SpendingDTO;
+import com.jatinc.ebank.dto.SummaryEventDTO;
+import com.jatinc.ebank.serdes.codec.BalanceMonthCodec;
+import com.jatinc.ebank.serdes.codec.BankAccountCodec;
+import com.jatinc.ebank.serdes.codec.BinaryCodec;
+import com.jatinc.ebank.serdes.codec.MonthlySummaryCodec;
+import com.jatinc.ebank.serdes.codec.PaymentCodec;
+import com.jatinc.ebank.serdes.codec.SpendingCodec;
+import com.jatinc.ebank.serdes.codec.SummaryEventCodec;
+import org.apache.kafka.common.serialization.Serde;
+
+import java.util.Map;
+
+/**
+ * Creates the value serdes of our topics and stores in the requested <code>SerdeFormat</code>.
+ */
+public final class ValueSerdes {
+
+    private static final PaymentCodec PAYMENT_CODEC = new PaymentCodec();
+    private static final MonthlySummaryCodec SUMMARY_CODEC = new MonthlySummaryCodec();
+
+    private static final Map<Class<?>, BinaryCodec<?>> CODECS = Map.of(
+            PaymentDTO.class, PAYMENT_CODEC,
+            BankAccountDTO.class, new BankAccountCodec(PAYMENT_CODEC),
+            MonthlySummaryDTO.class, SUMMARY_CODEC,
+            BalanceMonthDTO.class, new BalanceMonthCodec(),
+            SpendingDTO.class, new SpendingCodec(),
+            SummaryEventDTO.class, new SummaryEventCodec(SUMMARY_CODEC)
+    );
+
+    private ValueSerdes(){
+    }
+
+    /**
+     * get a serde for a value type
+     * @param format - the format the values are written in
+     * @param type - the class of the values
+     * @return serde for the type in the given format.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> Serde<T> forFormat(SerdeFormat format, Class<T> type){
+        if(format == SerdeFormat.JSON){
+            return new JsonSerde<>(type);
+        }
+
+        BinaryCodec<T> codec = (BinaryCodec<T>) CODECS.get(type);
+        if(codec == null){
+            throw new IllegalArgumentException("No binary codec registered for " + type.getName());
+        }
+        return new BinarySerde<>(type, codec);
+    }
+}
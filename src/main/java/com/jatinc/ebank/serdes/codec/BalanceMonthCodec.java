@@ -0,0 +1,77 @@
+package com.jatinc.ebank.serdes.codec;
+
+import com.jatinc.ebank.dto.BalanceMonthDTO;
+
+/**
+ * Binary layout of a <code>BalanceMonthDTO</code>.
+ *
+ * version 1: the iban, the month, the count and the number of days, then every day as the number of days since the
+ * previous one. then the number of currencies and for each of them the currency, its opening balance and the
+ * closing balance of every day as the change from the balance before it. both are small for an account with regular
+ * activity, so most days take a few bytes.
+ */
+public class BalanceMonthCodec implements BinaryCodec<BalanceMonthDTO> {
+
+    private static final int VERSION = 1;
+
+    @Override
+    public int currentVersion(){
+        return VERSION;
+    }
+
+    @Override
+    public void write(BalanceMonthDTO value, BinaryWriter writer){
+        writer.writeString(value.getIBan());
+        writer.writeYearMonth(value.getMonth());
+        writer.writeUnsignedVarLong(value.getCount());
+
+        int[] days = value.getDays();
+        writer.writeUnsignedVarLong(days.length);
+        int previousDay = 0;
+        for(int day : days){
+            writer.writeUnsignedVarLong(day - previousDay);
+            previousDay = day;
+        }
+
+        writer.writeUnsignedVarLong(value.getCurrencies().size());
+        value.getCurrencies().forEach((currency, balances) -> {
+            writer.writeString(currency);
+            writer.writeVarLong(balances.getOpening());
+            long previousBalance = balances.getOpening();
+            for(long balance : balances.getClosing()){
+                writer.writeVarLong(balance - previousBalance);
+                previousBalance = balance;
+            }
+        });
+    }
+
+    @Override
+    public BalanceMonthDTO read(BinaryReader reader, int version){
+        BalanceMonthDTO balanceMonth = new BalanceMonthDTO();
+        balanceMonth.setIBan(reader.readString());
+        balanceMonth.setMonth(reader.readYearMonth());
+        balanceMonth.setCount(reader.readUnsignedVarLong());
+
+        int[] days = new int[reader.readUnsignedVarInt()];
+        int previousDay = 0;
+        for(int i = 0; i < days.length; i++){
+            previousDay += reader.readUnsignedVarInt();
+            days[i] = previousDay;
+        }
+        balanceMonth.setDays(days);
+
+        int currencies = reader.readUnsignedVarInt();
+        for(int i = 0; i < currencies; i++){
+            String currency = reader.readString();
+            long opening = reader.readVarLong();
+            long[] closing = new long[days.length];
+            long previousBalance = opening;
+            for(int day = 0; day < closing.length; day++){
+                previousBalance += reader.readVarLong();
+                closing[day] = previousBalance;
+            }
+            balanceMonth.getCurrencies().put(currency, new BalanceMonthDTO.CurrencyBalances(opening, closing));
+        }
+        return balanceMonth;
+    }
+}
@@ -0,0 +1,89 @@
+package com.jatinc.ebank.serdes.codec;
+
+import com.jatinc.ebank.dto.BankAccountDTO;
+import com.jatinc.ebank.dto.PaymentDTO;
+
+import java.util.List;
+
+/**
+ * Binary layout of a <code>BankAccountDTO</code>.
+ *
+ * the iban, the month, the last update, the number of transactions, the <code>PaymentCodec</code> version, the
+ * length in bytes of every transaction and then each transaction in that layout, leaving out the iban wherever it
+ * matches the account. the lengths are an offset table, so the transactions are read lazily, see
+ * <code>LazyPaymentList</code>, and are always in <code>TRANSACTION_ORDER</code>.
+ */
+public class BankAccountCodec implements BinaryCodec<BankAccountDTO> {
+
+    private static final int VERSION = 1;
+    private static final int ESTIMATED_PAYMENT_BYTES = 64;
+
+    private final PaymentCodec paymentCodec;
+
+    public BankAccountCodec(PaymentCodec paymentCodec){
+        this.paymentCodec = paymentCodec;
+    }
+
+    @Override
+    public int currentVersion(){
+        return VERSION;
+    }
+
+    @Override
+    public void write(BankAccountDTO value, BinaryWriter writer){
+        writer.writeString(value.getIBan());
+        writer.writeYearMonth(value.getMonth());
+        writer.writeLocalDate(value.getLastUpdate());
+
+        List<PaymentDTO> transactions = value.getTransactions();
+        int paymentVersion = paymentCodec.currentVersion();
+        writer.writeUnsignedVarLong(transactions.size());
+        writer.writeUnsignedVarLong(paymentVersion);
+
+//        the lengths come before the transactions, so the transactions are written to their own buffer first
+        LazyPaymentList lazyTransactions = transactions instanceof LazyPaymentList lazy ? lazy : null;
+        BinaryWriter records = new BinaryWriter(transactions.size() * ESTIMATED_PAYMENT_BYTES);
+        int[] lengths = new int[transactions.size()];
+        for(int i = 0; i < lengths.length; i++){
+            int start = records.size();
+            if(lazyTransactions == null
+                    || !lazyTransactions.copyEncoded(i, records, value.getIBan(), paymentVersion)){
+                paymentCodec.write(transactions.get(i), records, value.getIBan());
+            }
+            lengths[i] = records.size() - start;
+        }
+        for(int length : lengths){
+            writer.writeUnsignedVarLong(length);
+        }
+        writer.writeBytes(records);
+    }
+
+    @Override
+    public BankAccountDTO read(BinaryReader reader, int version){
+        String iBan = reader.readString();
+        BankAccountDTO.BankAccountDTOBuilder account = BankAccountDTO.builder()
+                .iBan(iBan)
+                .month(reader.readYearMonth())
+                .lastUpdate(reader.readLocalDate());
+
+        int count = reader.readUnsignedVarInt();
+        int paymentVersion = reader.readUnsignedVarInt();
+        int[] lengths = new int[count];
+        for(int i = 0; i < count; i++){
+            lengths[i] = reader.readUnsignedVarInt();
+        }
+        int[] offsets = new int[count];
+        int offset = reader.position();
+        for(int i = 0; i < count; i++){
+            offsets[i] = offset;
+            offset += lengths[i];
+        }
+        reader.skip(offset - reader.position());
+
+//        written in order, so the transactions don't have to be decoded to check it like setTransactions does
+        return account
+                .transactions(new LazyPaymentList(reader.buffer(), offsets, lengths, paymentCodec, paymentVersion,
+                        iBan))
+                .build();
+    }
+}
@@ -0,0 +1,20 @@
+package com.jatinc.ebank.serdes.codec;
+
+/**
+ * Writes and reads one type in our binary format.
+ *
+ * every value is prefixed with the schema version it was written with, so a codec has to keep being able to read
+ * all of its older versions after changing its layout.
+ * @param <T> the type handled by the codec
+ */
+public interface BinaryCodec<T> {
+
+    /**
+     * @return the schema version that <code>write</code> produces.
+     */
+    int currentVersion();
+
+    void write(T value, BinaryWriter writer);
+
+    T read(BinaryReader reader, int version);
+}
@@ -0,0 +1,102 @@
+package com.jatinc.ebank.serdes.codec;
+
+import org.apache.kafka.common.errors.SerializationException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.YearMonth;
+
+/**
+ * Reads back the values written by a <code>BinaryWriter</code>.
+ */
+public class BinaryReader {
+
+    private final byte[] buffer;
+    private int position;
+
+    public BinaryReader(byte[] buffer, int offset){
+        this.buffer = buffer;
+        this.position = offset;
+    }
+
+    public int readByte(){
+        checkAvailable(1);
+        return buffer[position++] & 0xFF;
+    }
+
+    public long readUnsignedVarLong(){
+        long value = 0;
+        int shift = 0;
+        while(shift < 64){
+            int next = readByte();
+            value |= (long) (next & 0x7F) << shift;
+            if((next & 0x80) == 0){
+                return value;
+            }
+            shift += 7;
+        }
+        throw new SerializationException("Malformed varint at position " + position);
+    }
+
+    public long readVarLong(){
+        long raw = readUnsignedVarLong();
+        return (raw >>> 1) ^ -(raw & 1);
+    }
+
+    public int readVarInt(){
+        return Math.toIntExact(readVarLong());
+    }
+
+    public int readUnsignedVarInt(){
+        return Math.toIntExact(readUnsignedVarLong());
+    }
+
+    public String readString(){
+        int length = readUnsignedVarInt();
+        if(length == 0){
+            return null;
+        }
+
+        int byteCount = length - 1;
+        checkAvailable(byteCount);
+        String value = new String(buffer, position, byteCount, StandardCharsets.UTF_8);
+        position += byteCount;
+        return value;
+    }
+
+    public LocalDate readLocalDate(){
+        long epochDay = readVarLong();
+        return epochDay == Long.MIN_VALUE ? null : LocalDate.ofEpochDay(epochDay);
+    }
+
+    public YearMonth readYearMonth(){
+        long month = readVarLong();
+        return month == -1 ? null : YearMonth.of((int) (month / 12), (int) (month % 12) + 1);
+    }
+
+    public int position(){
+        return position;
+    }
+
+    /**
+     * move past bytes without reading them
+     * @param count - the number of bytes to skip
+     */
+    public void skip(int count){
+        checkAvailable(count);
+        position += count;
+    }
+
+    /**
+     * @return the value that is being read, for codecs that keep it to decode parts of it later.
+     */
+    byte[] buffer(){
+        return buffer;
+    }
+
+    private void checkAvailable(int count){
+        if(position + count > buffer.length){
+            throw new SerializationException("Unexpected end of binary value at position " + position);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.jatinc.ebank.serdes.codec;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Arrays;
+
+/**
+ * Minimal growable byte buffer used by the binary codecs.
+ *
+ * numbers are written as (zig-zag) varints and strings are length prefixed utf-8, where a length of 0 means
+ * <code>null</code> and any other length is the byte count plus one. dates are written as epoch days
+ * (<code>Long.MIN_VALUE</code> for <code>null</code>) and months as months since year 0 (-1 for <code>null</code>).
+ */
+public class BinaryWriter {
+
+    private byte[] buffer;
+    private int position;
+
+    public BinaryWriter(int initialCapacity){
+        this.buffer = new byte[Math.max(initialCapacity, 16)];
+    }
+
+    public void writeByte(int value){
+        ensureCapacity(1);
+        buffer[position++] = (byte) value;
+    }
+
+    /**
+     * write an unsigned variable length integer, using 7 bits per byte
+     * @param value - the value to write, treated as unsigned.
+     */
+    public void writeUnsignedVarLong(long value){
+        ensureCapacity(10);
+        while((value & ~0x7FL) != 0){
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+    }
+
+    /**
+     * write a signed variable length integer, zig-zag encoded so small negative numbers stay small
+     * @param value - the value to write.
+     */
+    public void writeVarLong(long value){
+        writeUnsignedVarLong((value << 1) ^ (value >> 63));
+    }
+
+    public void writeString(String value){
+        if(value == null){
+            writeUnsignedVarLong(0);
+            return;
+        }
+
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeUnsignedVarLong(bytes.length + 1L);
+        writeBytes(bytes);
+    }
+
+    public void writeLocalDate(LocalDate value){
+        writeVarLong(value == null ? Long.MIN_VALUE : value.toEpochDay());
+    }
+
+    public void writeYearMonth(YearMonth value){
+        writeVarLong(value == null ? -1 : value.getYear() * 12L + value.getMonthValue() - 1);
+    }
+
+    public void writeBytes(byte[] bytes){
+        writeBytes(bytes, 0, bytes.length);
+    }
+
+    public void writeBytes(byte[] bytes, int offset, int length){
+        ensureCapacity(length);
+        System.arraycopy(bytes, offset, buffer, position, length);
+        position += length;
+    }
+
+    /**
+     * append everything written to another writer
+     * @param other - the writer to copy from
+     */
+    public void writeBytes(BinaryWriter other){
+        writeBytes(other.buffer, 0, other.position);
+    }
+
+    public int size(){
+        return position;
+    }
+
+    public byte[] toByteArray(){
+        return Arrays.copyOf(buffer, position);
+    }
+
+    private void ensureCapacity(int extra){
+        if(position + extra > buffer.length){
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + extra));
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.jatinc.ebank.serdes.codec;
+
+import com.jatinc.ebank.dto.PaymentDTO;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * The transactions of a <code>BankAccountDTO</code> read with <code>BankAccountCodec</code> version 2, decoded one
+ * by one the first time they are accessed.
+ *
+ * the list keeps the serialized value and the offset of every transaction in it, so cutting a page out of a month
+ * (or a binary search for a cursor) only decodes the transactions it touches and never builds the strings of the
+ * others. transactions that were never accessed are copied as they are when the list is written again.
+ *
+ * the list can be changed like any other, a transaction that is added or replaced is simply kept decoded.
+ */
+final class LazyPaymentList extends AbstractList<PaymentDTO> implements RandomAccess {
+
+    private static final int NOT_ENCODED = -1;
+
+    private final byte[] buffer;
+    private final PaymentCodec paymentCodec;
+    private final int paymentVersion;
+    private final String impliedIBan;
+
+    private int[] offsets;
+    private int[] lengths;
+    private PaymentDTO[] payments;
+    private int size;
+
+    LazyPaymentList(byte[] buffer, int[] offsets, int[] lengths, PaymentCodec paymentCodec, int paymentVersion,
+                    String impliedIBan){
+        this.buffer = buffer;
+        this.offsets = offsets;
+        this.lengths = lengths;
+        this.paymentCodec = paymentCodec;
+        this.paymentVersion = paymentVersion;
+        this.impliedIBan = impliedIBan;
+        this.payments = new PaymentDTO[offsets.length];
+        this.size = offsets.length;
+    }
+
+    @Override
+    public PaymentDTO get(int index){
+        Objects.checkIndex(index, size);
+        PaymentDTO payment = payments[index];
+        if(payment == null){
+            payment = paymentCodec.read(new BinaryReader(buffer, offsets[index]), paymentVersion, impliedIBan);
+            payments[index] = payment;
+        }
+        return payment;
+    }
+
+    @Override
+    public int size(){
+        return size;
+    }
+
+    @Override
+    public PaymentDTO set(int index, PaymentDTO payment){
+        PaymentDTO previous = get(index);
+        payments[index] = payment;
+        offsets[index] = NOT_ENCODED;
+        return previous;
+    }
+
+    @Override
+    public void add(int index, PaymentDTO payment){
+        Objects.checkIndex(index, size + 1);
+        if(size == payments.length){
+            int capacity = Math.max(size + (size >> 1), size + 1);
+            offsets = Arrays.copyOf(offsets, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            payments = Arrays.copyOf(payments, capacity);
+        }
+        System.arraycopy(offsets, index, offsets, index + 1, size - index);
+        System.arraycopy(lengths, index, lengths, index + 1, size - index);
+        System.arraycopy(payments, index, payments, index + 1, size - index);
+        offsets[index] = NOT_ENCODED;
+        lengths[index] = 0;
+        payments[index] = payment;
+        size++;
+        modCount++;
+    }
+
+    @Override
+    public PaymentDTO remove(int index){
+        PaymentDTO previous = get(index);
+        int moved = size - index - 1;
+        System.arraycopy(offsets, index + 1, offsets, index, moved);
+        System.arraycopy(lengths, index + 1, lengths, index, moved);
+        System.arraycopy(payments, index + 1, payments, index, moved);
+        payments[--size] = null;
+        modCount++;
+        return previous;
+    }
+
+    /**
+     * copy a transaction that was never decoded to a writer as it is
+     * @param index - the position of the transaction
+     * @param writer - the writer to copy to
+     * @param iBan - the iban of the account the transaction is written in
+     * @param version - the <code>PaymentCodec</code> version the transaction is written in
+     * @return whether the transaction was copied, otherwise it has to be encoded.
+     */
+    boolean copyEncoded(int index, BinaryWriter writer, String iBan, int version){
+//        a decoded transaction may have been changed in place (converted), so only untouched ones are copied
+        if(payments[index] != null || offsets[index] == NOT_ENCODED || version != paymentVersion
+                || !Objects.equals(iBan, impliedIBan)){
+            return false;
+        }
+        writer.writeBytes(buffer, offsets[index], lengths[index]);
+        return true;
+    }
+}
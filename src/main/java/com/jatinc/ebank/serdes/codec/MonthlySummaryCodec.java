@@ -0,0 +1,87 @@
+package com.jatinc.ebank.serdes.codec;
+
+import com.jatinc.ebank.dto.MonthlySummaryDTO;
+
+/**
+ * Binary layout of a <code>MonthlySummaryDTO</code>.
+ *
+ * the iban, the month, the currency, the count, the debited and credited totals in minor units, the first and last
+ * transaction dates and then the debited and credited totals of each day, each prefixed by the number of days. then
+ * the number of other currencies and for each of them the currency, its debited and credited totals and its daily
+ * debited and credited totals, in the same layout.
+ */
+public class MonthlySummaryCodec implements BinaryCodec<MonthlySummaryDTO> {
+
+    private static final int VERSION = 1;
+
+    @Override
+    public int currentVersion(){
+        return VERSION;
+    }
+
+    @Override
+    public void write(MonthlySummaryDTO value, BinaryWriter writer){
+        writer.writeString(value.getIBan());
+        writer.writeYearMonth(value.getMonth());
+        writer.writeString(value.getCurrency());
+        writer.writeUnsignedVarLong(value.getCount());
+        writer.writeVarLong(value.getDebitedMinor());
+        writer.writeVarLong(value.getCreditedMinor());
+        writer.writeLocalDate(value.getFirstTransactionDate());
+        writer.writeLocalDate(value.getLastTransactionDate());
+        writeDailyTotals(value.getDailyDebitedMinor(), writer);
+        writeDailyTotals(value.getDailyCreditedMinor(), writer);
+
+        writer.writeUnsignedVarLong(value.getOtherCurrencies().size());
+        value.getOtherCurrencies().forEach((currency, totals) -> {
+            writer.writeString(currency);
+            writer.writeVarLong(totals.getDebitedMinor());
+            writer.writeVarLong(totals.getCreditedMinor());
+            writeDailyTotals(totals.getDailyDebitedMinor(), writer);
+            writeDailyTotals(totals.getDailyCreditedMinor(), writer);
+        });
+    }
+
+    @Override
+    public MonthlySummaryDTO read(BinaryReader reader, int version){
+        MonthlySummaryDTO summary = new MonthlySummaryDTO();
+        summary.setIBan(reader.readString());
+        summary.setMonth(reader.readYearMonth());
+        summary.setCurrency(reader.readString());
+        summary.setCount(reader.readUnsignedVarLong());
+        summary.setDebitedMinor(reader.readVarLong());
+        summary.setCreditedMinor(reader.readVarLong());
+        summary.setFirstTransactionDate(reader.readLocalDate());
+        summary.setLastTransactionDate(reader.readLocalDate());
+        summary.setDailyDebitedMinor(readDailyTotals(reader));
+        summary.setDailyCreditedMinor(readDailyTotals(reader));
+
+        int currencies = reader.readUnsignedVarInt();
+        for(int i = 0; i < currencies; i++){
+            String currency = reader.readString();
+            MonthlySummaryDTO.CurrencyTotals totals = new MonthlySummaryDTO.CurrencyTotals();
+            totals.setDebitedMinor(reader.readVarLong());
+            totals.setCreditedMinor(reader.readVarLong());
+            totals.setDailyDebitedMinor(readDailyTotals(reader));
+            totals.setDailyCreditedMinor(readDailyTotals(reader));
+            summary.getOtherCurrencies().put(currency, totals);
+        }
+        return summary;
+    }
+
+    private void writeDailyTotals(long[] totals, BinaryWriter writer){
+        writer.writeUnsignedVarLong(totals.length);
+        for(long total : totals){
+            writer.writeVarLong(total);
+        }
+    }
+
+    private long[] readDailyTotals(BinaryReader reader){
+        int days = reader.readUnsignedVarInt();
+        long[] totals = new long[Math.max(days, MonthlySummaryDTO.MAX_DAYS_IN_MONTH)];
+        for(int i = 0; i < days; i++){
+            totals[i] = reader.readVarLong();
+        }
+        return totals;
+    }
+}
@@ -0,0 +1,96 @@
+package com.jatinc.ebank.serdes.codec;
+
+import com.jatinc.ebank.dto.PaymentDTO;
+
+import java.time.LocalDate;
+
+/**
+ * Binary layout of a <code>PaymentDTO</code>.
+ *
+ * a flags byte, the payment id, the amount as currency code plus the amount in minor units, the iban, the
+ * transaction date as epoch day and the description. amounts that could not be parsed are kept as their original
+ * string.
+ */
+public class PaymentCodec implements BinaryCodec<PaymentDTO> {
+
+    private static final int VERSION = 1;
+
+    private static final int AMOUNT_MINOR_UNITS = 1;
+    private static final int AMOUNT_RAW = 1 << 1;
+    private static final int IBAN_IMPLIED = 1 << 2;
+    private static final int HAS_DATE = 1 << 3;
+
+    @Override
+    public int currentVersion(){
+        return VERSION;
+    }
+
+    @Override
+    public void write(PaymentDTO value, BinaryWriter writer){
+        write(value, writer, null);
+    }
+
+    @Override
+    public PaymentDTO read(BinaryReader reader, int version){
+        return read(reader, version, null);
+    }
+
+    /**
+     * write a payment, leaving out its iban if it is the same as the one of the enclosing value
+     * @param value - the payment to write
+     * @param writer - the writer to write to
+     * @param impliedIBan - the iban of the enclosing value, or <code>null</code> if there is none.
+     */
+    void write(PaymentDTO value, BinaryWriter writer, String impliedIBan){
+        String currency = value.getCurrency();
+
+        int flags = 0;
+        if(currency != null){
+            flags |= AMOUNT_MINOR_UNITS;
+        }else if(value.getAmount() != null){
+            flags |= AMOUNT_RAW;
+        }
+        if(impliedIBan != null && impliedIBan.equals(value.getIBan())){
+            flags |= IBAN_IMPLIED;
+        }
+        if(value.getTransactionDate() != null){
+            flags |= HAS_DATE;
+        }
+
+        writer.writeByte(flags);
+        writer.writeString(value.getPaymentId());
+        if((flags & AMOUNT_MINOR_UNITS) != 0){
+            writer.writeString(currency);
+            writer.writeVarLong(value.getAmountMinor());
+        }else if((flags & AMOUNT_RAW) != 0){
+            writer.writeString(value.getAmount());
+        }
+        if((flags & IBAN_IMPLIED) == 0){
+            writer.writeString(value.getIBan());
+        }
+        if((flags & HAS_DATE) != 0){
+            writer.writeVarLong(value.getTransactionDate().toEpochDay());
+        }
+        writer.writeString(value.getDescription());
+    }
+
+    PaymentDTO read(BinaryReader reader, int version, String impliedIBan){
+        PaymentDTO payment = new PaymentDTO();
+
+        int flags = reader.readByte();
+        payment.setPaymentId(reader.readString());
+        if((flags & AMOUNT_MINOR_UNITS) != 0){
+            String currency = reader.readString();
+            payment.setAmount(reader.readVarLong(), currency);
+        }else if((flags & AMOUNT_RAW) != 0){
+            payment.setAmount(reader.readString());
+        }
+        payment.setIBan((flags & IBAN_IMPLIED) != 0 ? impliedIBan : reader.readString());
+        if((flags & HAS_DATE) != 0){
+            payment.setTransactionDate(LocalDate.ofEpochDay(reader.readVarLong()));
+        }
+        payment.setDescription(reader.readString());
+
+        return payment;
+    }
+}
@@ -0,0 +1,53 @@
+package com.jatinc.ebank.serdes.codec;
+
+import com.jatinc.ebank.dto.SpendingDTO;
+
+/**
+ * Binary layout of a <code>SpendingDTO</code>.
+ *
+ * the currency, the count, the debited total and the largest debit, the amounts in minor units. then the number
+ * of other currencies and for each of them the currency, its debited total and its largest debit.
+ */
+public class SpendingCodec implements BinaryCodec<SpendingDTO> {
+
+    private static final int VERSION = 1;
+
+    @Override
+    public int currentVersion(){
+        return VERSION;
+    }
+
+    @Override
+    public void write(SpendingDTO value, BinaryWriter writer){
+        writer.writeString(value.getCurrency());
+        writer.writeUnsignedVarLong(value.getCount());
+        writer.writeVarLong(value.getDebitedMinor());
+        writer.writeVarLong(value.getMaxDebitMinor());
+
+        writer.writeUnsignedVarLong(value.getOtherCurrencies().size());
+        value.getOtherCurrencies().forEach((currency, totals) -> {
+            writer.writeString(currency);
+            writer.writeVarLong(totals.getDebitedMinor());
+            writer.writeVarLong(totals.getMaxDebitMinor());
+        });
+    }
+
+    @Override
+    public SpendingDTO read(BinaryReader reader, int version){
+        SpendingDTO spending = new SpendingDTO();
+        spending.setCurrency(reader.readString());
+        spending.setCount(reader.readUnsignedVarLong());
+        spending.setDebitedMinor(reader.readVarLong());
+        spending.setMaxDebitMinor(reader.readVarLong());
+
+        int currencies = reader.readUnsignedVarInt();
+        for(int i = 0; i < currencies; i++){
+            String currency = reader.readString();
+            SpendingDTO.CurrencyTotals totals = new SpendingDTO.CurrencyTotals();
+            totals.setDebitedMinor(reader.readVarLong());
+            totals.setMaxDebitMinor(reader.readVarLong());
+            spending.getOtherCurrencies().put(currency, totals);
+        }
+        return spending;
+    }
+}
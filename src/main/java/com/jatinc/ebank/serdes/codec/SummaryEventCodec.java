@@ -0,0 +1,39 @@
+package com.jatinc.ebank.serdes.codec;
+
+import com.jatinc.ebank.dto.SummaryEventDTO;
+
+/**
+ * Binary layout of a <code>SummaryEventDTO</code>.
+ *
+ * version 1: the type as a byte, the <code>MonthlySummaryCodec</code> version and then the summary in that layout.
+ */
+public class SummaryEventCodec implements BinaryCodec<SummaryEventDTO> {
+
+    private static final int VERSION = 1;
+
+    private final MonthlySummaryCodec summaryCodec;
+
+    public SummaryEventCodec(MonthlySummaryCodec summaryCodec){
+        this.summaryCodec = summaryCodec;
+    }
+
+    @Override
+    public int currentVersion(){
+        return VERSION;
+    }
+
+    @Override
+    public void write(SummaryEventDTO value, BinaryWriter writer){
+        writer.writeByte(value.getType().ordinal());
+        writer.writeUnsignedVarLong(summaryCodec.currentVersion());
+        summaryCodec.write(value.getSummary(), writer);
+    }
+
+    @Override
+    public SummaryEventDTO read(BinaryReader reader, int version){
+        SummaryEventDTO event = new SummaryEventDTO();
+        event.setType(SummaryEventDTO.Type.values()[reader.readByte()]);
+        event.setSummary(summaryCodec.read(reader, reader.readUnsignedVarInt()));
+        return event;
+    }
+}
@@ -0,0 +1,168 @@
+package com.jatinc.ebank.service;
+
+import com.jatinc.ebank.dto.BalanceMonthDTO;
+import com.jatinc.ebank.topology.PaymentTopology;
+import com.jatinc.ebank.topology.StoreKeys;
+import com.jatinc.ebank.util.MoneyUtil;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.streams.errors.InvalidStateStoreException;
+import org.apache.kafka.streams.state.KeyValueIterator;
+import org.apache.kafka.streams.state.QueryableStoreTypes;
+import org.apache.kafka.streams.state.ReadOnlyKeyValueStore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Answers the balance queries of an account from the balance months of <code>BalanceProcessor</code>.
+ */
+@Service
+@Slf4j
+public class BalanceService {
+
+    private final QueryRouter queryRouter;
+    private final RemoteQueryService remoteQueryService;
+    private final Scheduler storeQueryScheduler;
+    private final Timer balanceReadTimer;
+
+    @Autowired
+    public BalanceService(QueryRouter queryRouter, RemoteQueryService remoteQueryService,
+                          @Qualifier("storeQueryScheduler") Scheduler storeQueryScheduler,
+                          MeterRegistry meterRegistry){
+        this.queryRouter = queryRouter;
+        this.remoteQueryService = remoteQueryService;
+        this.storeQueryScheduler = storeQueryScheduler;
+        this.balanceReadTimer = QueryRouter.storeReadTimer(PaymentTopology.BALANCE_STORE, meterRegistry);
+    }
+
+    /**
+     * Get the balance of an iban account over a range of days without blocking the caller, without going through
+     * its transactions. the store is read on the store query scheduler.
+     * @param iBan - string containing the iban account
+     * @param from - the first day of the range
+     * @param to - the last day of the range (inclusive), the same as <code>from</code> for the balance of one day
+     * @return - <code>Mono</code> with the closing <code>balance</code> of <code>to</code> in every currency of the
+     * account and the <code>balances</code> curve: the closing balances of <code>from</code> followed by the closing
+     * balances of every later day in the range that had transactions. empty if the account has no transactions.
+     */
+    public Mono<Map<String, Object>> getBalanceAsync(String iBan, LocalDate from, LocalDate to){
+//        the balance months are partitioned by iban alone, see BalanceProcessor
+        return queryRouter.routeAsync(PaymentTopology.BALANCE_STORE, iBan, iBan,
+                staleAllowed -> Mono.fromCallable(() -> getLocalBalance(iBan, from, to, staleAllowed))
+                        .subscribeOn(storeQueryScheduler),
+                (host, staleAllowed) -> remoteQueryService.getBalance(host, staleAllowed, iBan, from, to),
+                Collections.emptyMap());
+    }
+
+    /**
+     * Get the balance of an iban account over a range of days from the stores of this instance only. the months of
+     * an account are next to each other in the store, so a curve costs a lookup of the latest month on or before
+     * <code>from</code> plus a range scan over the months up to <code>to</code>, whatever the age of the account.
+     * @param iBan - string containing the iban account
+     * @param from - the first day of the range
+     * @param to - the last day of the range (inclusive)
+     * @param staleAllowed - whether standby replicas and restoring stores may be queried
+     * @return - same as <code>getBalanceAsync</code>.
+     */
+    public Map<String, Object> getLocalBalance(String iBan, LocalDate from, LocalDate to, boolean staleAllowed){
+        try{
+            ReadOnlyKeyValueStore<String, BalanceMonthDTO> store = queryRouter.store(PaymentTopology.BALANCE_STORE,
+                    QueryableStoreTypes.keyValueStore(), staleAllowed);
+            YearMonth fromMonth = YearMonth.from(from);
+            YearMonth toMonth = YearMonth.from(to);
+
+            List<BalanceMonthDTO> balanceMonths = balanceReadTimer.record(() -> {
+                List<BalanceMonthDTO> months = new ArrayList<>();
+//                the month that has the balance of from, which may be any month before it
+                try(KeyValueIterator<String, BalanceMonthDTO> opening = store.reverseRange(
+                        StoreKeys.firstMonthKey(iBan), StoreKeys.monthKey(iBan, fromMonth))){
+                    if(opening.hasNext()){
+                        months.add(opening.next().value);
+                    }
+                }
+                if(toMonth.isAfter(fromMonth)){
+                    try(KeyValueIterator<String, BalanceMonthDTO> range = store.range(
+                            StoreKeys.monthKey(iBan, fromMonth.plusMonths(1)), StoreKeys.monthKey(iBan, toMonth))){
+                        range.forEachRemaining(month -> months.add(month.value));
+                    }
+                }
+                return months;
+            });
+            if(balanceMonths.isEmpty() && !hasLaterBalanceMonth(store, iBan, toMonth)){
+                return Collections.emptyMap();
+            }
+
+            List<Map<String, Object>> curve = new ArrayList<>();
+            Map<String, Long> balance = Collections.emptyMap();
+            if(!balanceMonths.isEmpty()){
+                balance = balancesOn(balanceMonths.get(0), from);
+            }
+            curve.add(toBalancePoint(from, balance));
+            for(BalanceMonthDTO balanceMonth : balanceMonths){
+                for(int day : balanceMonth.getDays()){
+                    LocalDate date = balanceMonth.getMonth().atDay(day);
+                    if(date.isAfter(from) && !date.isAfter(to)){
+                        balance = balanceMonth.balancesAt(day);
+                        curve.add(toBalancePoint(date, balance));
+                    }
+                }
+            }
+            if(!balanceMonths.isEmpty()){
+                balance = balancesOn(balanceMonths.get(balanceMonths.size() - 1), to);
+            }
+
+            Map<String, Object> response = new LinkedHashMap<>();
+            response.put("iban", iBan);
+            response.put("from", from.toString());
+            response.put("to", to.toString());
+            response.put("balance", MoneyUtil.toDecimals(balance));
+            response.put("balances", curve);
+            return response;
+        }catch(InvalidStateStoreException ex){
+//            same as the month queries, a store that is restoring is not an account without transactions
+            throw ex;
+        }catch(Exception ex){
+            log.error("error", ex);
+            return Collections.emptyMap();
+        }
+    }
+
+    /**
+     * whether an account has a balance month after a month, so it exists but had no transactions up to that month
+     */
+    private boolean hasLaterBalanceMonth(ReadOnlyKeyValueStore<String, BalanceMonthDTO> store, String iBan,
+                                         YearMonth month){
+        try(KeyValueIterator<String, BalanceMonthDTO> later = store.range(
+                StoreKeys.monthKey(iBan, month.plusMonths(1)), StoreKeys.lastMonthKey(iBan))){
+            return later.hasNext();
+        }
+    }
+
+    /**
+     * get the closing balances of a day from the latest month of the account on or before it
+     */
+    private static Map<String, Long> balancesOn(BalanceMonthDTO balanceMonth, LocalDate date){
+        return balanceMonth.getMonth().equals(YearMonth.from(date))
+                ? balanceMonth.balancesAt(date.getDayOfMonth())
+                : balanceMonth.closingBalances();
+    }
+
+    private static Map<String, Object> toBalancePoint(LocalDate date, Map<String, Long> balances){
+        Map<String, Object> point = new LinkedHashMap<>();
+        point.put("date", date.toString());
+        point.put("balance", MoneyUtil.toDecimals(balances));
+        return point;
+    }
+}
@@ -0,0 +1,230 @@
+package com.jatinc.ebank.service;
+
+import com.jatinc.ebank.dto.BankAccountDTO;
+import com.jatinc.ebank.dto.MonthlySummaryDTO;
+import com.jatinc.ebank.dto.RequestBatchItemDTO;
+import com.jatinc.ebank.topology.PaymentTopology;
+import com.jatinc.ebank.topology.StoreKeys;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.streams.errors.InvalidStateStoreException;
+import org.apache.kafka.streams.state.HostInfo;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestClientException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+
+/**
+ * Answers the queries of the transactions of many account months in one call, for statement generation.
+ */
+@Service
+@Slf4j
+public class BatchQueryService {
+
+    @Value("${payment.batch.concurrency:16}")
+    private int batchConcurrency;
+
+    private final PaymentService paymentService;
+    private final RemoteQueryService remoteQueryService;
+    private final QueryRouter queryRouter;
+    private final Scheduler storeQueryScheduler;
+
+    @Autowired
+    public BatchQueryService(PaymentService paymentService, RemoteQueryService remoteQueryService,
+                             QueryRouter queryRouter,
+                             @Qualifier("storeQueryScheduler") Scheduler storeQueryScheduler){
+        this.paymentService = paymentService;
+        this.remoteQueryService = remoteQueryService;
+        this.queryRouter = queryRouter;
+        this.storeQueryScheduler = storeQueryScheduler;
+    }
+
+    /**
+     * Get the transactions of many iban accounts and months in one call. the months this instance owns are read
+     * from the stores together, each account month once and in key order however often it is in the batch, and
+     * the months of other instances are forwarded in one request per instance. conversions share the rate table
+     * cache, so every distinct currency and month is only loaded once.
+     * @param items - the accounts and months to query
+     * @param authorized - whether the caller may read an iban account, the other items are answered with a 403
+     * @return one result per item in the order they complete, with the <code>index</code> of the item, its
+     * <code>iban</code> and <code>month</code>, the http <code>status</code> of the item and, when there is one,
+     * the <code>result</code> in the same format as <code>PaymentService.getUserTransactionsByMonthAsync</code>.
+     */
+    public Flux<Map<String, Object>> getUserTransactionsBatch(List<RequestBatchItemDTO> items,
+                                                              Predicate<String> authorized){
+        List<Map<String, Object>> rejected = new ArrayList<>();
+        Map<Boolean, List<BatchItem>> localItems = new HashMap<>();
+        Map<HostInfo, List<BatchItem>> remoteItems = new HashMap<>();
+
+        for(int i = 0; i < items.size(); i++){
+            BatchItem item = new BatchItem(i, items.get(i));
+            if(item.query().getIBan() == null || item.query().getMonth() == null){
+                rejected.add(batchResult(item, HttpStatus.BAD_REQUEST, null));
+                continue;
+            }
+            if(!authorized.test(item.query().getIBan())){
+                rejected.add(batchResult(item, HttpStatus.FORBIDDEN, null));
+                continue;
+            }
+
+            QueryRouter.Route route = queryRouter.locate(PaymentTopology.PAYMENTS_STORE, batchKey(item));
+            if(route.local()){
+                localItems.computeIfAbsent(route.staleAllowed(), staleAllowed -> new ArrayList<>()).add(item);
+            }else{
+                remoteItems.computeIfAbsent(route.activeHost(), host -> new ArrayList<>()).add(item);
+            }
+        }
+
+        List<Flux<Map<String, Object>>> results = new ArrayList<>();
+        results.add(Flux.fromIterable(rejected));
+        localItems.forEach((staleAllowed, hostItems) -> results.add(getLocalBatch(hostItems, staleAllowed)));
+        remoteItems.forEach((host, hostItems) -> results.add(getRemoteBatch(host, hostItems)));
+        return Flux.merge(results);
+    }
+
+    /**
+     * Get the transactions of many iban accounts and months from the stores of this instance only
+     * @param items - the accounts and months to query
+     * @param staleAllowed - whether standby replicas and restoring stores may be queried
+     * @return same as <code>getUserTransactionsBatch</code>, the index is the position in <code>items</code>.
+     */
+    public Flux<Map<String, Object>> getLocalUserTransactionsBatch(List<RequestBatchItemDTO> items,
+                                                                   boolean staleAllowed){
+        List<BatchItem> batchItems = new ArrayList<>(items.size());
+        for(int i = 0; i < items.size(); i++){
+            batchItems.add(new BatchItem(i, items.get(i)));
+        }
+        return getLocalBatch(batchItems, staleAllowed);
+    }
+
+    private Flux<Map<String, Object>> getLocalBatch(List<BatchItem> items, boolean staleAllowed){
+        return Mono.fromCallable(() -> readMonthPages(items, staleAllowed))
+                .subscribeOn(storeQueryScheduler)
+                .onErrorResume(InvalidStateStoreException.class, ex -> {
+                    log.debug("Stores not available for a batch of {} items", items.size(), ex);
+                    return Mono.just(items.stream()
+                            .map(item -> new BatchRead(item, null, HttpStatus.SERVICE_UNAVAILABLE))
+                            .toList());
+                })
+                .flatMapMany(Flux::fromIterable)
+                .flatMap(read -> {
+                    if(read.page() == null){
+                        return Mono.just(batchResult(read.item(), read.status(), null));
+                    }
+                    RequestBatchItemDTO query = read.item().query();
+                    return paymentService.toResponseAsync(read.page(), query.getCurrency(), query.getMonth())
+                            .map(response -> batchResult(read.item(), read.status(), response))
+                            .onErrorResume(ex -> {
+                                log.error("error", ex);
+                                return Mono.just(batchResult(read.item(), HttpStatus.INTERNAL_SERVER_ERROR, null));
+                            });
+                }, batchConcurrency);
+    }
+
+    /**
+     * read the pages of a batch, with one store lookup per distinct account month
+     * @param items - the accounts and months of the batch
+     * @param staleAllowed - whether standby replicas and restoring stores may be queried
+     * @return the page of every item, or the status of the items that can't be answered.
+     */
+    private List<BatchRead> readMonthPages(List<BatchItem> items, boolean staleAllowed){
+        Set<String> monthKeys = new TreeSet<>();
+        items.forEach(item -> monthKeys.add(batchKey(item)));
+        Map<String, MonthlySummaryDTO> summaries = paymentService.getMonthSummaries(monthKeys, staleAllowed);
+
+        monthKeys.removeIf(monthKey -> summaries.get(monthKey) == null || summaries.get(monthKey).getCount() == 0);
+        Map<String, BankAccountDTO> buckets = paymentService.getBankTransactions(monthKeys, staleAllowed);
+
+        List<BatchRead> reads = new ArrayList<>(items.size());
+        for(BatchItem item : items){
+            RequestBatchItemDTO query = item.query();
+            int size = Math.max(query.getSize(), 1);
+            MonthlySummaryDTO monthSummary = summaries.get(batchKey(item));
+            if(monthSummary == null || monthSummary.getCount() == 0){
+                reads.add(new BatchRead(item, new PaymentService.MonthPage(null, Collections.emptyList(), null,
+                        size), HttpStatus.NOT_FOUND));
+                continue;
+            }
+            try{
+                reads.add(new BatchRead(item, paymentService.toMonthPage(monthSummary, buckets.get(batchKey(item)),
+                        Math.max(query.getPage(), 1), size, query.getCursor()), HttpStatus.OK));
+            }catch(IllegalArgumentException ex){
+                reads.add(new BatchRead(item, null, HttpStatus.BAD_REQUEST));
+            }
+        }
+        return reads;
+    }
+
+    /**
+     * forward the items of a batch that another instance owns in one request, if that instance can't be reached
+     * every item is routed on its own so its standby replicas are tried
+     */
+    private Flux<Map<String, Object>> getRemoteBatch(HostInfo host, List<BatchItem> items){
+        List<RequestBatchItemDTO> queries = items.stream().map(BatchItem::query).toList();
+        return Mono.fromCallable(() -> remoteQueryService.getUserTransactionsBatch(host, false, queries))
+                .subscribeOn(storeQueryScheduler)
+                .flatMapMany(Flux::fromIterable)
+                .map(result -> {
+//                    the instance numbered the items of its own request
+                    result.put("index", items.get(((Number) result.get("index")).intValue()).index());
+                    return result;
+                })
+                .onErrorResume(RestClientException.class, ex -> {
+                    log.warn("Instance {} is not reachable for a batch of {} items", host, items.size(), ex);
+//                    the items are queried without blocking, a blocking query here would hold a store query thread
+//                    while the rate tables it waits for are loaded on the same scheduler
+                    return Flux.fromIterable(items).flatMap(item -> {
+                        RequestBatchItemDTO query = item.query();
+                        return paymentService.getUserTransactionsByMonthAsync(query.getIBan(), query.getMonth(),
+                                        Math.max(query.getPage(), 1), Math.max(query.getSize(), 1),
+                                        query.getCursor(), query.getCurrency())
+                                .map(response -> batchResult(item,
+                                        response.isEmpty() ? HttpStatus.NOT_FOUND : HttpStatus.OK, response))
+                                .onErrorResume(itemEx -> Mono.just(batchResult(item,
+                                        HttpStatus.SERVICE_UNAVAILABLE, null)));
+                    }, batchConcurrency);
+                });
+    }
+
+    private static String batchKey(BatchItem item){
+        return StoreKeys.monthKey(item.query().getIBan(), item.query().getMonth());
+    }
+
+    private static Map<String, Object> batchResult(BatchItem item, HttpStatus status, Map<String, Object> result){
+        Map<String, Object> batchResult = new LinkedHashMap<>();
+        batchResult.put("index", item.index());
+        batchResult.put("iban", item.query().getIBan());
+        batchResult.put("month", item.query().getMonth() == null ? null : item.query().getMonth().toString());
+        batchResult.put("status", status.value());
+        if(result != null){
+            batchResult.put("result", result);
+        }
+        return batchResult;
+    }
+
+    /**
+     * an item of a batch query, with its position in the batch
+     */
+    private record BatchItem(int index, RequestBatchItemDTO query) {
+    }
+
+    /**
+     * the page read for an item of a batch query, or the status if there is no page to answer with
+     */
+    private record BatchRead(BatchItem item, PaymentService.MonthPage page, HttpStatus status) {
+    }
+}
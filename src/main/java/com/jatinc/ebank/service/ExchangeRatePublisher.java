@@ -0,0 +1,57 @@
+package com.jatinc.ebank.service;
+
+import com.jatinc.ebank.dto.ExchangeRateTableDTO;
+import com.jatinc.ebank.topology.PaymentTopology;
+import com.jatinc.ebank.topology.StoreKeys;
+import com.jatinc.ebank.util.MoneyUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Publishes daily exchange rates to the <code>exchange-rates</code> topic, from where they end up in the global
+ * exchange rate table of every instance.
+ */
+@Service
+@Slf4j
+public class ExchangeRatePublisher {
+
+    private final KafkaTemplate<String, String> kafkaTemplate;
+
+    @Autowired
+    public ExchangeRatePublisher(KafkaTemplate<String, String> kafkaTemplate){
+        this.kafkaTemplate = kafkaTemplate;
+    }
+
+    /**
+     * publish the exchange rate between two currencies on a day
+     * @param baseCurrency - the currency we convert from
+     * @param currency - the currency we convert to
+     * @param date - the day of the rate
+     * @param rate - the exchange rate
+     */
+    public void publish(String baseCurrency, String currency, LocalDate date, BigDecimal rate){
+        kafkaTemplate.send(PaymentTopology.EXCHANGE_RATES_TOPIC, StoreKeys.rateKey(baseCurrency, currency, date),
+                rate.toPlainString());
+    }
+
+    /**
+     * publish all the known rates of a rate table
+     * @param rateTable - the rates of a month
+     */
+    public void publish(ExchangeRateTableDTO rateTable){
+        long[] dailyRates = rateTable.getDailyRates();
+        for(int day = 0; day < dailyRates.length; day++){
+            if(dailyRates[day] != 0){
+                publish(rateTable.getBaseCurrency(), rateTable.getCurrency(), rateTable.getMonth().atDay(day + 1),
+                        BigDecimal.valueOf(dailyRates[day], MoneyUtil.RATE_SCALE).stripTrailingZeros());
+            }
+        }
+        log.info("Published exchange rates from {} to {} for {}", rateTable.getBaseCurrency(),
+                rateTable.getCurrency(), rateTable.getMonth());
+    }
+}
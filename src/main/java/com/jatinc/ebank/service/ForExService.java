@@ -1,51 +1,350 @@
 package com.jatinc.ebank.service;
 
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.jatinc.ebank.dto.ExchangeRateTableDTO;
 import com.jatinc.ebank.dto.PaymentDTO;
+import com.jatinc.ebank.topology.PaymentTopology;
+import com.jatinc.ebank.topology.StoreKeys;
+import com.jatinc.ebank.util.MoneyUtil;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.streams.KafkaStreams;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.StoreQueryParameters;
+import org.apache.kafka.streams.errors.InvalidStateStoreException;
+import org.apache.kafka.streams.state.KeyValueIterator;
+import org.apache.kafka.streams.state.QueryableStoreTypes;
+import org.apache.kafka.streams.state.ReadOnlyKeyValueStore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
 
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
 import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 @Service
 @Slf4j
 public class ForExService {
 
+    public static final String RATE_CACHE_NAME = "exchange-rates";
+
     @Value("${currency.exchange.rate.url}")
     private String currencyApiUrl;
 
     @Value("${currency.exchange.rate.api.key}")
     private String currencyApiKey;
 
+    private final WebClient webClient;
+    private final Scheduler exchangeRateScheduler;
+    private final KafkaStreams kafkaStreams;
+    private final ExchangeRatePublisher exchangeRatePublisher;
+    private final boolean publishFetchedRates;
+    private final int maxConcurrentLoads;
+
+    /**
+     * rate tables by (base currency, currency, month). past months never change so they are kept until evicted
+     * by size, the current month still gets new days so it expires after <code>currentMonthTtl</code>.
+     * concurrent misses for the same key wait for a single load.
+     *
+     * tables are loaded from the global exchange rate store, and only when that doesn't have every day we need
+     * from the exchange rate api. rates fetched from the api are published back to the exchange rate topic, so
+     * the next instance (or restart) finds them locally. loads don't block the caller, the store is read on the
+     * exchange rate scheduler and the api is called through the non blocking web client.
+     */
+    private final AsyncLoadingCache<RateTableKey, ExchangeRateTableDTO> rateTables;
+
+    private final Timer apiSuccessTimer;
+    private final Timer apiErrorTimer;
+
+    @Autowired
+    public ForExService(@Value("${currency.exchange.rate.cache.max-size:500}") long maxCachedTables,
+                        @Value("${currency.exchange.rate.cache.current-month-ttl:1h}") Duration currentMonthTtl,
+                        @Value("${currency.exchange.rate.publish-fetched:true}") boolean publishFetchedRates,
+                        @Value("${currency.exchange.rate.max-concurrent-loads:4}") int maxConcurrentLoads,
+                        @Qualifier("forExWebClient") WebClient webClient,
+                        @Qualifier("exchangeRateScheduler") Scheduler exchangeRateScheduler,
+                        KafkaStreams kafkaStreams,
+                        ExchangeRatePublisher exchangeRatePublisher,
+                        MeterRegistry meterRegistry){
+        this.publishFetchedRates = publishFetchedRates;
+        this.maxConcurrentLoads = maxConcurrentLoads;
+        this.webClient = webClient;
+        this.exchangeRateScheduler = exchangeRateScheduler;
+        this.kafkaStreams = kafkaStreams;
+        this.exchangeRatePublisher = exchangeRatePublisher;
+        this.rateTables = Caffeine.newBuilder()
+                .maximumSize(maxCachedTables)
+                .expireAfter(new RateTableExpiry(currentMonthTtl))
+                .recordStats()
+                .buildAsync((key, executor) -> loadRateTable(key).toFuture());
+
+        CaffeineCacheMetrics.monitor(meterRegistry, rateTables, RATE_CACHE_NAME);
+        this.apiSuccessTimer = apiTimer("success", meterRegistry);
+        this.apiErrorTimer = apiTimer("error", meterRegistry);
+    }
+
     /**
-     * convert all the transactions to the provided currency at that day
+     * convert all the transactions to the provided currency at that day without blocking the caller. the
+     * transactions can be in any number of currencies, the rate table of every currency is loaded at the same time
+     * (at most <code>maxConcurrentLoads</code> of them) so a page costs the slowest load and not the sum of them.
      * @param transactions - the list of transactions
      * @param currency - the currency that we want to convert to
-     * @return - list of transactions with the amount converted to the provided currency at the specified day.
+     * @param month - the month the transactions belong to
+     * @return - <code>Mono</code> with the list of transactions with the amount converted to the provided currency.
+     */
+    public Mono<List<PaymentDTO>> convertCurrenciesAsync(List<PaymentDTO> transactions, String currency,
+                                                         YearMonth month){
+        Set<String> baseCurrencies = new LinkedHashSet<>();
+        for(PaymentDTO transaction : transactions){
+            baseCurrencies.add(transaction.getCurrency());
+        }
+
+        return getRateTablesAsync(baseCurrencies, currency, month)
+                .map(rateTables -> {
+                    List<PaymentDTO> converted = new ArrayList<>(transactions.size());
+                    for(PaymentDTO transaction : transactions){
+                        converted.add(convertCurrency(transaction, currency, rateTables));
+                    }
+                    return converted;
+                });
+    }
+
+    /**
+     * convert a single transaction to the provided currency at that day with rate tables that were already loaded,
+     * so converting the transactions of a month one by one costs the same as converting them as a list
+     * @param transaction - the transaction to convert, its amount is replaced
+     * @param currency - the currency that we want to convert to
+     * @param rateTables - the rate tables of the month by base currency, see <code>getRateTablesAsync</code>
+     * @return - the same transaction with the amount converted to the provided currency.
+     */
+    public PaymentDTO convertCurrency(PaymentDTO transaction, String currency,
+                                      Map<String, ExchangeRateTableDTO> rateTables){
+//        transactions already in the currency have no rate table and are kept as they are
+        ExchangeRateTableDTO rateTable = rateTables.get(transaction.getCurrency());
+        if(rateTable == null){
+            return transaction;
+        }
+
+        long rate = rateTable.getRate(transaction.getTransactionDate());
+        long convertedValue = MoneyUtil.convert(transaction.getAmountMinor(), rate,
+                MoneyUtil.fractionDigits(rateTable.getBaseCurrency()), MoneyUtil.fractionDigits(currency));
+
+        transaction.setAmount(convertedValue, currency);
+        return transaction;
+    }
+
+    /**
+     * convert amounts that are totalled per day of a month to the provided currency without blocking the caller
+     * @param dailyAmounts - the total amount of each day in minor units, indexed by day of month starting at 0
+     * @param baseCurrency - the currency that the amounts are in
+     * @param currency - the currency that we want to convert to
+     * @param month - the month the amounts belong to
+     * @return - <code>Mono</code> with the sum of all the converted amounts in minor units of the provided currency.
+     */
+    public Mono<Long> convertDailyAmountsAsync(long[] dailyAmounts, String baseCurrency, String currency,
+                                               YearMonth month){
+        return getRateTableAsync(baseCurrency, currency, month)
+                .map(rateTable -> convertDailyAmounts(dailyAmounts, currency, rateTable));
+    }
+
+    /**
+     * convert amounts that are totalled per day of a month in any number of currencies to the provided currency and
+     * add them up without blocking the caller. the rate table of every currency is loaded at the same time (at most
+     * <code>maxConcurrentLoads</code> of them), amounts already in the currency are only added up.
+     * @param dailyAmounts - the total amount of each day in minor units, by the currency the amounts are in
+     * @param currency - the currency that we want to convert to
+     * @param month - the month the amounts belong to
+     * @return - <code>Mono</code> with the sum of all the converted amounts in minor units of the provided currency.
+     */
+    public Mono<Long> convertDailyAmountsAsync(Map<String, long[]> dailyAmounts, String currency, YearMonth month){
+        return Flux.fromIterable(dailyAmounts.entrySet())
+                .flatMap(amounts -> currency.equals(amounts.getKey())
+                        ? Mono.just(Arrays.stream(amounts.getValue()).sum())
+                        : convertDailyAmountsAsync(amounts.getValue(), amounts.getKey(), currency, month),
+                        maxConcurrentLoads)
+                .reduce(0L, Long::sum);
+    }
+
+    /**
+     * convert amounts that are totalled per day of a month in any number of currencies to the provided currency and
+     * add them up, with rate tables that were already loaded
+     * @param dailyAmounts - the total amount of each day in minor units, by the currency the amounts are in
+     * @param currency - the currency that we want to convert to
+     * @param rateTables - the rate tables of the month by base currency, see <code>getRateTablesAsync</code>
+     * @return - the sum of all the converted amounts in minor units of the provided currency.
+     */
+    public long convertDailyAmounts(Map<String, long[]> dailyAmounts, String currency,
+                                    Map<String, ExchangeRateTableDTO> rateTables){
+        long total = 0;
+        for(Map.Entry<String, long[]> amounts : dailyAmounts.entrySet()){
+            ExchangeRateTableDTO rateTable = rateTables.get(amounts.getKey());
+            total += rateTable == null
+                    ? Arrays.stream(amounts.getValue()).sum()
+                    : convertDailyAmounts(amounts.getValue(), currency, rateTable);
+        }
+        return total;
+    }
+
+    private long convertDailyAmounts(long[] dailyAmounts, String currency, ExchangeRateTableDTO rateTable){
+        YearMonth month = rateTable.getMonth();
+        int baseDigits = MoneyUtil.fractionDigits(rateTable.getBaseCurrency());
+        int targetDigits = MoneyUtil.fractionDigits(currency);
+
+        long total = 0;
+        for(int day = 0; day < dailyAmounts.length; day++){
+            if(dailyAmounts[day] != 0){
+                long rate = rateTable.getRate(month.atDay(day + 1));
+                total += MoneyUtil.convert(dailyAmounts[day], rate, baseDigits, targetDigits);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * get the rate tables of a month from several currencies to one currency without blocking the caller. the
+     * tables are loaded at the same time (at most <code>maxConcurrentLoads</code> of them), so they cost the slowest
+     * load and not the sum of them.
+     * @param baseCurrencies - the currencies which we want to convert from, the one we convert to is skipped
+     * @param convertCurrency - the currency we want to convert to.
+     * @param month - the month we want to get all the exchange rate data.
+     * @return <code>Mono</code> with the rate tables of the month by base currency.
+     */
+    public Mono<Map<String, ExchangeRateTableDTO>> getRateTablesAsync(Collection<String> baseCurrencies,
+                                                                      String convertCurrency, YearMonth month){
+        return Flux.fromIterable(baseCurrencies)
+                .filter(baseCurrency -> !convertCurrency.equals(baseCurrency))
+                .distinct()
+                .flatMap(baseCurrency -> getRateTableAsync(baseCurrency, convertCurrency, month), maxConcurrentLoads)
+                .collectMap(ExchangeRateTableDTO::getBaseCurrency);
+    }
+
+    /**
+     * get the exchange rate of every day in a month without blocking the caller, from the cache if we already
+     * have it
+     * @param baseCurrency - the base currency which we want to convert from
+     * @param convertCurrency - the currency we want to convert to.
+     * @param month - the month we want to get all the exchange rate data.
+     * @return <code>Mono</code> with the rate table of the month.
+     */
+    public Mono<ExchangeRateTableDTO> getRateTableAsync(String baseCurrency, String convertCurrency,
+                                                        YearMonth month){
+        return Mono.fromFuture(() -> rateTables.get(new RateTableKey(baseCurrency, convertCurrency, month)));
+    }
+
+    private Mono<ExchangeRateTableDTO> loadRateTable(RateTableKey key){
+        return Mono.fromCallable(() -> getStoredRateTable(key))
+                .subscribeOn(exchangeRateScheduler)
+                .switchIfEmpty(Mono.defer(() -> fetchRateTable(key)
+                        .doOnNext(fetchedRates -> {
+                            if(publishFetchedRates){
+                                publishInBackground(fetchedRates);
+                            }
+                        })));
+    }
+
+    /**
+     * publish fetched rates to the exchange rate topic without holding up the caller. the rates arrive on a netty
+     * event loop and <code>KafkaTemplate.send</code> can block (on metadata or a full buffer), so the publishing
+     * runs on the exchange rate scheduler. the rates are returned either way, a failed publish only means they are
+     * fetched again later.
+     * @param rateTable - the rates that were fetched from the exchange rate api
+     */
+    private void publishInBackground(ExchangeRateTableDTO rateTable){
+        exchangeRateScheduler.schedule(() -> {
+            try{
+                exchangeRatePublisher.publish(rateTable);
+            }catch(RuntimeException ex){
+                log.warn("Could not publish the exchange rates from {} to {} for {}", rateTable.getBaseCurrency(),
+                        rateTable.getCurrency(), rateTable.getMonth(), ex);
+            }
+        });
+    }
+
+    /**
+     * get a rate table from the global exchange rate store
+     * @param key - the currencies and month of the table
+     * @return the rate table, or <code>null</code> if the store is missing any of the days up to today.
      */
-    public List<PaymentDTO> convertCurrencies(List<PaymentDTO> transactions, String currency){
-        String baseCurrency = transactions.get(0).getAmount().substring(0, 3);
-        HashMap historicalExchangeRates = (HashMap) getExchangeRate(baseCurrency, currency,
-                YearMonth.of(2022, 2)).get("data");
+    private ExchangeRateTableDTO getStoredRateTable(RateTableKey key){
+        YearMonth month = key.month();
+        LocalDate lastDay = month.atEndOfMonth().isAfter(LocalDate.now()) ? LocalDate.now() : month.atEndOfMonth();
+        if(lastDay.isBefore(month.atDay(1))){
+            return null;
+        }
+
+        long[] dailyRates = new long[month.lengthOfMonth()];
+        int storedDays = 0;
+        try(KeyValueIterator<String, String> rates = getRateStore().range(
+                StoreKeys.rateKey(key.baseCurrency(), key.currency(), month.atDay(1)),
+                StoreKeys.rateKey(key.baseCurrency(), key.currency(), lastDay))){
+            while(rates.hasNext()){
+                KeyValue<String, String> rate = rates.next();
+                int day = LocalDate.parse(rate.key.substring(rate.key.lastIndexOf(StoreKeys.SEPARATOR) + 1))
+                        .getDayOfMonth();
+                dailyRates[day - 1] = MoneyUtil.toFixedPointRate(new BigDecimal(rate.value));
+                storedDays++;
+            }
+        }catch(InvalidStateStoreException ex){
+            log.warn("Exchange rate store is not available, falling back to the exchange rate api", ex);
+            return null;
+        }
+
+        return storedDays == lastDay.getDayOfMonth()
+                ? new ExchangeRateTableDTO(key.baseCurrency(), key.currency(), month, dailyRates)
+                : null;
+    }
+
+    private Mono<ExchangeRateTableDTO> fetchRateTable(RateTableKey key){
+        log.info("Loading exchange rates from {} to {} for {}", key.baseCurrency(), key.currency(),
+                key.month());
 
-        return transactions
-                .stream()
-                .map(transaction->{
-                    String amount = transaction.getAmount().substring(4);
-                    String date = transaction.getTransactionDate().toString();
-                    HashMap rateMap = (HashMap) historicalExchangeRates.get(date);
-                    String rate = rateMap.get(currency).toString();
-                    BigDecimal convertedValue = new BigDecimal(amount)
-                            .multiply(new BigDecimal(rate));
+        return getExchangeRate(key.baseCurrency(), key.currency(), key.month())
+                .map(response -> toRateTable(key, response));
+    }
+
+    private ExchangeRateTableDTO toRateTable(RateTableKey key, HashMap response){
+        if(response == null || !(response.get("data") instanceof HashMap historicalExchangeRates)){
+            throw new IllegalStateException("No exchange rate data for " + key);
+        }
 
+        YearMonth month = key.month();
+        long[] dailyRates = new long[month.lengthOfMonth()];
+        for(int day = 0; day < dailyRates.length; day++){
+            HashMap rateMap = (HashMap) historicalExchangeRates.get(month.atDay(day + 1).toString());
+            if(rateMap != null && rateMap.get(key.currency()) != null){
+                dailyRates[day] = MoneyUtil.toFixedPointRate(new BigDecimal(rateMap.get(key.currency()).toString()));
+            }
+        }
+        return new ExchangeRateTableDTO(key.baseCurrency(), key.currency(), month, dailyRates);
+    }
 
-                    transaction.setAmount(currency + " " + convertedValue.toString());
-                    return transaction;
-                }).toList();
+    private ReadOnlyKeyValueStore<String, String> getRateStore(){
+        return kafkaStreams.store(
+                StoreQueryParameters.fromNameAndType(
+                        PaymentTopology.EXCHANGE_RATE_STORE,
+                        QueryableStoreTypes.keyValueStore()
+                )
+        );
     }
 
     /**
@@ -53,11 +352,25 @@ public class ForExService {
      * @param baseCurrency - the base currency which we want to convert from
      * @param convertCurrency - the currency we want to convert to.
      * @param month - the month we want to get all the exchange rate data.
-     * @return - response object containing the currency rate for each day.
+     * @return - <code>Mono</code> with the response object containing the currency rate for each day.
      */
-    private HashMap getExchangeRate(String baseCurrency, String convertCurrency, YearMonth month){
-        RestTemplate restTemplate = new RestTemplate();
-        return restTemplate.getForObject(getFullRequestUrl(baseCurrency, convertCurrency, month), HashMap.class);
+    private Mono<HashMap> getExchangeRate(String baseCurrency, String convertCurrency, YearMonth month){
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return webClient.get()
+                    .uri(getFullRequestUrl(baseCurrency, convertCurrency, month))
+                    .retrieve()
+                    .bodyToMono(HashMap.class)
+                    .doOnSuccess(response -> apiSuccessTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS))
+                    .doOnError(ex -> apiErrorTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+        });
+    }
+
+    private static Timer apiTimer(String outcome, MeterRegistry meterRegistry){
+        return Timer.builder("forex.api.requests")
+                .description("calls to the exchange rate api")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
     }
 
     /**
@@ -85,4 +398,34 @@ public class ForExService {
         return requestApi.toString();
     }
 
+    private record RateTableKey(String baseCurrency, String currency, YearMonth month) {
+    }
+
+    /**
+     * keeps rate tables of past months forever and the ones of the current (or a future) month for a fixed time
+     */
+    private static class RateTableExpiry implements Expiry<RateTableKey, ExchangeRateTableDTO> {
+        private final long currentMonthTtlNanos;
+
+        RateTableExpiry(Duration currentMonthTtl){
+            this.currentMonthTtlNanos = currentMonthTtl.toNanos();
+        }
+
+        @Override
+        public long expireAfterCreate(RateTableKey key, ExchangeRateTableDTO value, long currentTime){
+            return key.month().isBefore(YearMonth.now()) ? Long.MAX_VALUE : currentMonthTtlNanos;
+        }
+
+        @Override
+        public long expireAfterUpdate(RateTableKey key, ExchangeRateTableDTO value, long currentTime,
+                                      long currentDuration){
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(RateTableKey key, ExchangeRateTableDTO value, long currentTime,
+                                    long currentDuration){
+            return currentDuration;
+        }
+    }
 }
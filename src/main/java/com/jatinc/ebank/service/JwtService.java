@@ -1,21 +1,55 @@
 package com.jatinc.ebank.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.Jwts;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Base64;
 import java.util.Date;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
 @Service
 @Slf4j
 public class JwtService {
 
+    public static final String CLAIMS_CACHE_NAME = "jwt-claims";
+
     @Value("${application.security.jwt.secret-key}")
     public String JWT_SECRET;
 
+    /**
+     * verified claims by sha-256 digest of their token, so the signature of a token is only checked once for all
+     * the requests it is used in. entries are evicted when the token expires, or after <code>maxTtl</code> for
+     * tokens without an expiration.
+     */
+    private final Cache<String, Claims> verifiedClaims;
+
+    @Autowired
+    public JwtService(@Value("${application.security.jwt.claims-cache.max-size:10000}") long maxCachedTokens,
+                      @Value("${application.security.jwt.claims-cache.max-ttl:15m}") Duration maxTtl,
+                      MeterRegistry meterRegistry){
+        this.verifiedClaims = Caffeine.newBuilder()
+                .maximumSize(maxCachedTokens)
+                .expireAfter(new ClaimsExpiry(maxTtl))
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, verifiedClaims, CLAIMS_CACHE_NAME);
+    }
+
     public String extractUserKey(String token){
         return extractClaim(token, claims -> claims.get("userToken", String.class));
     }
@@ -26,7 +60,8 @@ public class JwtService {
     }
 
     public boolean isTokenValid(String token) {
-        return true;
+        Date expiration = extractExpiration(token);
+        return expiration == null || expiration.after(new Date());
     }
 
     private Date extractExpiration(String token){
@@ -34,10 +69,51 @@ public class JwtService {
     }
 
     private Claims extractAllClaims(String token){
-        return Jwts
+        return verifiedClaims.get(digest(token), tokenDigest -> Jwts
                 .parser()
                 .setSigningKey(JWT_SECRET.getBytes())
                 .parseClaimsJws(token)
-                .getBody();
+                .getBody());
+    }
+
+    private String digest(String token){
+        try{
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        }catch(NoSuchAlgorithmException ex){
+            throw new IllegalStateException("SHA-256 is not available", ex);
+        }
+    }
+
+    /**
+     * keeps verified claims until their token expires, but never longer than the configured maximum
+     */
+    private static class ClaimsExpiry implements Expiry<String, Claims> {
+        private final long maxTtlNanos;
+
+        ClaimsExpiry(Duration maxTtl){
+            this.maxTtlNanos = maxTtl.toNanos();
+        }
+
+        @Override
+        public long expireAfterCreate(String key, Claims claims, long currentTime){
+            Date expiration = claims.getExpiration();
+            if(expiration == null){
+                return maxTtlNanos;
+            }
+
+            long untilExpiration = TimeUnit.MILLISECONDS.toNanos(expiration.getTime() - System.currentTimeMillis());
+            return Math.max(0, Math.min(untilExpiration, maxTtlNanos));
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Claims claims, long currentTime, long currentDuration){
+            return currentDuration;
+        }
+
+        @Override
+        public long expireAfterRead(String key, Claims claims, long currentTime, long currentDuration){
+            return currentDuration;
+        }
     }
 }
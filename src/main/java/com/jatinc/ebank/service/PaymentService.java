@@ -1,141 +1,400 @@
 package com.jatinc.ebank.service;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
 import com.jatinc.ebank.dto.BankAccountDTO;
+import com.jatinc.ebank.dto.ExchangeRateTableDTO;
+import com.jatinc.ebank.dto.MonthlySummaryDTO;
 import com.jatinc.ebank.dto.PaymentDTO;
 import com.jatinc.ebank.topology.PaymentTopology;
+import com.jatinc.ebank.topology.StoreKeys;
+import com.jatinc.ebank.util.MoneyUtil;
+import com.jatinc.ebank.util.TransactionCursor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.kafka.streams.KafkaStreams;
-import org.apache.kafka.streams.StoreQueryParameters;
+import org.apache.kafka.streams.errors.InvalidStateStoreException;
+import org.apache.kafka.streams.state.HostInfo;
 import org.apache.kafka.streams.state.QueryableStoreTypes;
 import org.apache.kafka.streams.state.ReadOnlyKeyValueStore;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
 
-import java.math.BigDecimal;
-import java.time.LocalDate;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Stream;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
 @Service
 @Slf4j
 public class PaymentService {
 
-    private final KafkaStreams kafkaStreams;
+    private static final int STREAM_FLUSH_ROWS = 500;
+
     private final ForExService forExService;
+    private final RemoteQueryService remoteQueryService;
+    private final QueryRouter queryRouter;
+    private final ObjectWriter ndjsonWriter;
+    private final Scheduler storeQueryScheduler;
+    private final Timer bucketReadTimer;
+    private final Timer summaryReadTimer;
+    private final Timer pageTimer;
+    private final ResponseCache responseCache;
 
     @Autowired
-    public PaymentService(KafkaStreams kafkaStreams, ForExService forExService) {
-        this.kafkaStreams = kafkaStreams;
+    public PaymentService(ForExService forExService, RemoteQueryService remoteQueryService,
+                          QueryRouter queryRouter, ObjectMapper objectMapper,
+                          @Qualifier("storeQueryScheduler") Scheduler storeQueryScheduler,
+                          MeterRegistry meterRegistry, ResponseCache responseCache) {
         this.forExService = forExService;
+        this.remoteQueryService = remoteQueryService;
+        this.queryRouter = queryRouter;
+        this.storeQueryScheduler = storeQueryScheduler;
+        this.bucketReadTimer = QueryRouter.storeReadTimer(PaymentTopology.PAYMENTS_STORE, meterRegistry);
+        this.summaryReadTimer = QueryRouter.storeReadTimer(PaymentTopology.SUMMARY_STORE, meterRegistry);
+        this.responseCache = responseCache;
+        this.pageTimer = Timer.builder("payment.query.page")
+                .description("time to find and copy a page of the transactions of a month")
+                .register(meterRegistry);
+//        one JSON document per line, and the response stream is closed by the container and not by us
+        this.ndjsonWriter = objectMapper.writer()
+                .withRootValueSeparator("\n")
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
     }
 
     /**
-     * Get all bank transactions from a specic iban account
+     * Get the bank transactions from a specific iban account in a single month
      * @param iBan - string containing the iban account
-     * @return <code>BankAccountDTO</code> object that contains all the transaction activity in the iban account.
+     * @param month - the month to retrieve all the transactions from
+     * @return <code>BankAccountDTO</code> object that contains the transaction activity of the month, or
+     * <code>null</code> if there was none.
      */
-    public BankAccountDTO getBankTransactionsByIBan(String iBan){
-        return getStore().get(iBan);
+    public BankAccountDTO getBankTransactionsByMonth(String iBan, YearMonth month){
+        return getBankTransactionsByMonth(iBan, month, false);
     }
 
+    private BankAccountDTO getBankTransactionsByMonth(String iBan, YearMonth month, boolean staleAllowed){
+        return readBucket(getStore(staleAllowed), StoreKeys.monthKey(iBan, month));
+    }
+
+    private BankAccountDTO readBucket(ReadOnlyKeyValueStore<String, BankAccountDTO> store, String monthKey){
+        return bucketReadTimer.record(() -> store.get(monthKey));
+    }
 
     /**
-     * Get all the transactions from a iban account in a specific month
+     * Write all the transactions from a iban account in a specific month as newline delimited JSON, one
+     * transaction per line ordered by date, followed by a line with the <code>summary</code> of the month.
+     * the transactions are written one by one, so no response object with the whole month is ever built.
      * @param iBan - string containing the iban account
      * @param month - the month to retrieve all the transactions from
-     * @param page - the page of results for pagination
-     * @param size - the total number of records per page
+     * @param cursor - the <code>next</code> token of a previous page to resume after, or <code>null</code>
      * @param currency - the currency that the transactions have to be converted to
-     * @return - <code>HashMap</code> object that contains the total debited and credited amount, as well as
-     * all the transactions in the selected page.
+     * @param outputStream - the stream of the response
+     * @throws IOException if the response can't be written.
      */
-    public Map<String, Object> getUserTransactionsByMonth(String iBan, YearMonth month, int page, int size,
-                                                          String currency){
+    public void streamUserTransactionsByMonth(String iBan, YearMonth month, String cursor, String currency,
+                                              OutputStream outputStream) throws IOException {
         try {
-            BankAccountDTO userAccountDetails = getBankTransactionsByIBan(iBan);
-            Map<String, Object> userTransactionDetails = new HashMap<>();
+            routeQuery(iBan, month,
+                    staleAllowed -> {
+                        writeLocalUserTransactionsByMonth(iBan, month, cursor, currency, staleAllowed,
+                                outputStream);
+                        return Boolean.TRUE;
+                    },
+                    (host, staleAllowed) -> {
+                        remoteQueryService.streamUserTransactionsByMonth(host, staleAllowed, iBan, month, cursor,
+                                currency, outputStream);
+                        return Boolean.TRUE;
+                    },
+                    Boolean.FALSE);
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    /**
+     * Run a query of an iban account month on the instance that owns it, see <code>QueryRouter.route</code>
+     * @param iBan - string containing the iban account
+     * @param month - the month that is queried
+     * @return the result of the first instance that answered.
+     */
+    private <T> T routeQuery(String iBan, YearMonth month, Function<Boolean, T> localQuery,
+                             BiFunction<HostInfo, Boolean, T> remoteQuery, T unavailable){
+        return queryRouter.route(PaymentTopology.PAYMENTS_STORE, StoreKeys.monthKey(iBan, month), iBan, localQuery,
+                remoteQuery, unavailable);
+    }
 
-            if (userAccountDetails.getTransactions().isEmpty()) {
+    /**
+     * Get all the transactions from a iban account in a specific month without blocking the caller. the stores
+     * are read on the store query scheduler and the currency conversion doesn't hold a thread while the exchange
+     * rates are loaded, so the number of requests in flight isn't limited by the number of threads.
+     * @param iBan - string containing the iban account
+     * @param month - the month to retrieve all the transactions from
+     * @param page - the page of results for pagination, ignored when a cursor is given
+     * @param size - the total number of records per page
+     * @param cursor - the <code>next</code> token of the previous page, or <code>null</code> to use the page number
+     * @param currency - the currency that the transactions have to be converted to
+     * @return - <code>Mono</code> with the <code>HashMap</code> object that contains the total debited and credited
+     * amount, all the transactions in the selected page and the <code>next</code> token for the page after it.
+     */
+    public Mono<Map<String, Object>> getUserTransactionsByMonthAsync(String iBan, YearMonth month, int page,
+                                                                     int size, String cursor, String currency){
+        return queryRouter.routeAsync(PaymentTopology.PAYMENTS_STORE, StoreKeys.monthKey(iBan, month), iBan,
+                staleAllowed -> getLocalUserTransactionsByMonthAsync(iBan, month, page, size, cursor, currency,
+                        staleAllowed),
+                (host, staleAllowed) -> remoteQueryService.getUserTransactionsByMonth(host, staleAllowed, iBan,
+                        month, page, size, cursor, currency),
+                Collections.emptyMap());
+    }
+
+    /**
+     * Get all the transactions from a iban account in a specific month from the stores of this instance only,
+     * without blocking the caller
+     * @param staleAllowed - whether standby replicas and restoring stores may be queried
+     * @return - same as <code>getUserTransactionsByMonthAsync</code>.
+     */
+    public Mono<Map<String, Object>> getLocalUserTransactionsByMonthAsync(String iBan, YearMonth month, int page,
+                                                                          int size, String cursor, String currency,
+                                                                          boolean staleAllowed){
+        String monthKey = StoreKeys.monthKey(iBan, month);
+        String query = ResponseCache.queryKey(page, size, cursor, currency);
+        return Mono.fromCallable(() -> Optional.ofNullable(getMonthSummary(iBan, month, staleAllowed)))
+                .subscribeOn(storeQueryScheduler)
+                .flatMap(monthSummary -> {
+                    long version = versionOf(monthSummary.orElse(null));
+                    Map<String, Object> cachedResponse = responseCache.get(monthKey, query, version);
+                    if (cachedResponse != null) {
+                        return Mono.just(cachedResponse);
+                    }
+
+                    return Mono.fromCallable(() -> readMonthPage(monthSummary.orElse(null), iBan, month, page,
+                                    size, cursor, staleAllowed))
+                            .subscribeOn(storeQueryScheduler)
+                            .flatMap(monthPage -> toResponseAsync(monthPage, currency, month))
+                            .doOnNext(response -> {
+                                if (version > 0) {
+                                    responseCache.put(monthKey, query, version, response);
+                                }
+                            });
+                })
+                .onErrorResume(ex -> !(ex instanceof InvalidStateStoreException), ex -> {
+                    log.error("error", ex);
+                    return Mono.just(Collections.<String, Object>emptyMap());
+                });
+    }
+
+    /**
+     * build the response of a month query, converting the page and the totals without blocking
+     * @param monthPage - the page read from the stores
+     * @param currency - the currency that the transactions have to be converted to
+     * @param month - the month of the page
+     * @return <code>Mono</code> with the response.
+     */
+    Mono<Map<String, Object>> toResponseAsync(MonthPage monthPage, String currency, YearMonth month){
+        MonthlySummaryDTO monthSummary = monthPage.summary();
+        if (monthSummary == null) {
+            return Mono.just(toResponse(monthPage, null, null));
+        }
+//        without a currency the transactions are kept as they are and the totals are in the currency of the summary
+        String totalsCurrency = currency != null ? currency : monthSummary.getCurrency();
+        Mono<List<PaymentDTO>> transactions = currency != null
+                ? forExService.convertCurrenciesAsync(monthPage.transactions(), currency, month)
+                : Mono.just(monthPage.transactions());
+
+//        the page and both totals load the rate table of each currency they have, the cache loads it only once
+        return Mono.zip(
+                transactions,
+                forExService.convertDailyAmountsAsync(monthSummary.dailyDebitedByCurrency(), totalsCurrency, month),
+                forExService.convertDailyAmountsAsync(monthSummary.dailyCreditedByCurrency(), totalsCurrency, month)
+        ).map(converted -> toResponse(monthPage, converted.getT1(),
+                toTotals(converted.getT2(), converted.getT3(), totalsCurrency)));
+    }
+
+    /**
+     * read a page of the transactions of a month from the stores
+     * @param monthSummary - the totals of the month, <code>null</code> if there are none
+     * @param staleAllowed - whether standby replicas and restoring stores may be queried
+     * @return the page, with a <code>null</code> summary if there are no transactions in the month.
+     */
+    private MonthPage readMonthPage(MonthlySummaryDTO monthSummary, String iBan, YearMonth month, int page,
+                                    int size, String cursor, boolean staleAllowed){
+        if (monthSummary == null || monthSummary.getCount() == 0) {
+            return new MonthPage(null, Collections.emptyList(), null, size);
+        }
+        return toMonthPage(monthSummary, getBankTransactionsByMonth(iBan, month, staleAllowed), page, size, cursor);
+    }
+
+    /**
+     * cut a page out of the transactions of a month
+     * @param monthSummary - the totals of the month, not empty
+     * @param userAccountDetails - the transactions of the month, or <code>null</code>
+     * @return the page.
+     * @throws IllegalArgumentException if the cursor can't be read.
+     */
+    MonthPage toMonthPage(MonthlySummaryDTO monthSummary, BankAccountDTO userAccountDetails, int page, int size,
+                          String cursor){
+        List<PaymentDTO> monthTransactions = userAccountDetails == null
+                ? Collections.emptyList()
+                : userAccountDetails.getTransactions();
+
+//        the transactions are sorted, so a page is found with a binary search (cursor) or an offset (page)
+        long pageStart = System.nanoTime();
+        int start = cursor != null
+                ? TransactionCursor.decode(cursor).positionIn(monthTransactions)
+                : (int) Math.min((long) (page - 1) * size, monthTransactions.size());
+        int end = (int) Math.min((long) start + size, monthTransactions.size());
+        String next = end < monthTransactions.size()
+                ? TransactionCursor.after(monthTransactions.get(end - 1)).encode()
+                : null;
+
+        List<PaymentDTO> transactionPage = new ArrayList<>(monthTransactions.subList(start, end));
+        pageTimer.record(System.nanoTime() - pageStart, TimeUnit.NANOSECONDS);
+
+        return new MonthPage(monthSummary, transactionPage, next, size);
+    }
+
+    /**
+     * build the response of a month query
+     * @param monthPage - the page read from the stores
+     * @param transactions - the transactions of the page, converted if a currency was requested
+     * @param totals - the debited and credited totals of the month
+     * @return <code>HashMap</code> object with the totals, the transactions, the total pages and the next cursor.
+     */
+    private Map<String, Object> toResponse(MonthPage monthPage, List<PaymentDTO> transactions,
+                                           Map<String, Object> totals){
+        Map<String, Object> userTransactionDetails = new HashMap<>();
+
+        if (monthPage.summary() == null) {
 //            if there are no transactions, return an empty json response
-                userTransactionDetails.put("debited", 0);
-                userTransactionDetails.put("credited", 0);
-                userTransactionDetails.put("transactions", 0);
-                userTransactionDetails.put("total-pages", 1);
-            } else {
-//            populate the response object.
-                List<PaymentDTO> transactionPage = getMonthTransactions(userAccountDetails, month)
-                        .skip(((long) (page - 1) * size))
-                        .limit(size)
-                        .toList();
-                transactionPage = forExService.convertCurrencies(transactionPage, currency);
-
-                BigDecimal debitAmount = transactionPage
-                        .stream()
-                        .filter((payment -> BigDecimal.valueOf(Double
-                                        .parseDouble(payment
-                                                .getAmount()
-                                                .substring(3)
-                                                .trim()))
-                                .compareTo(BigDecimal.ZERO) > 0))
-                        .map(payment -> BigDecimal.valueOf(Double
-                                .parseDouble(payment
-                                        .getAmount()
-                                        .substring(3)
-                                        .trim())))
-                        .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-                BigDecimal creditAmount = transactionPage
-                        .stream()
-                        .filter((payment -> BigDecimal.valueOf(Double
-                                        .parseDouble(payment
-                                                .getAmount()
-                                                .substring(3)
-                                                .trim()))
-                                .compareTo(BigDecimal.ZERO) < 0))
-                        .map(payment -> BigDecimal
-                                .valueOf(Double
-                                        .parseDouble(payment
-                                                .getAmount()
-                                                .substring(3)
-                                                .trim())))
-                        .reduce(BigDecimal.ZERO, BigDecimal::add)
-                        .negate();
-
-                int totalPages = getTotalPages(size, (int) getMonthTransactions(userAccountDetails, month).count());
-
-                userTransactionDetails.put("debited", debitAmount);
-                userTransactionDetails.put("credited", creditAmount);
-                userTransactionDetails.put("transactions", transactionPage);
-                userTransactionDetails.put("total-pages", totalPages);
+            userTransactionDetails.put("debited", 0);
+            userTransactionDetails.put("credited", 0);
+            userTransactionDetails.put("transactions", 0);
+            userTransactionDetails.put("total-pages", 1);
+        } else {
+//            populate the response object, the totals come from the summary and cover the whole month.
+            userTransactionDetails.putAll(totals);
+            userTransactionDetails.put("transactions", transactions);
+            userTransactionDetails.put("total-pages",
+                    getTotalPages(monthPage.size(), (int) monthPage.summary().getCount()));
+            userTransactionDetails.put("next", monthPage.next());
+        }
+        userTransactionDetails.put("version", versionOf(monthPage.summary()));
+        return userTransactionDetails;
+    }
+
+    /**
+     * Write all the transactions from a iban account in a specific month from the stores of this instance only
+     * @param iBan - string containing the iban account
+     * @param month - the month to retrieve all the transactions from
+     * @param cursor - the <code>next</code> token of a previous page to resume after, or <code>null</code>
+     * @param currency - the currency that the transactions have to be converted to
+     * @param staleAllowed - whether standby replicas and restoring stores may be queried
+     * @param outputStream - the stream of the response, it is flushed but left open
+     * @throws UncheckedIOException if the response can't be written.
+     */
+    public void writeLocalUserTransactionsByMonth(String iBan, YearMonth month, String cursor, String currency,
+                                                  boolean staleAllowed, OutputStream outputStream){
+        MonthlySummaryDTO monthSummary = getMonthSummary(iBan, month, staleAllowed);
+        BankAccountDTO userAccountDetails = monthSummary == null || monthSummary.getCount() == 0
+                ? null
+                : getBankTransactionsByMonth(iBan, month, staleAllowed);
+        List<PaymentDTO> monthTransactions = userAccountDetails == null
+                ? Collections.emptyList()
+                : userAccountDetails.getTransactions();
+
+        int start = cursor != null ? TransactionCursor.decode(cursor).positionIn(monthTransactions) : 0;
+        boolean convert = currency != null;
+        Map<String, ExchangeRateTableDTO> rateTables = monthSummary == null || monthSummary.getCount() == 0
+                ? Collections.emptyMap()
+                : getRateTables(monthSummary, currency, month);
+
+        try (SequenceWriter lines = ndjsonWriter.writeValues(outputStream)) {
+            for (int i = start; i < monthTransactions.size(); i++) {
+                PaymentDTO transaction = monthTransactions.get(i);
+                lines.write(convert ? forExService.convertCurrency(transaction, currency, rateTables) : transaction);
+//                hand the rows to the container every so often instead of buffering the whole month
+                if ((i - start + 1) % STREAM_FLUSH_ROWS == 0) {
+                    lines.flush();
+                }
             }
 
-            return userTransactionDetails;
-        }catch(Exception ex){
-            log.error("error", ex);
-            return Collections.emptyMap();
+            Map<String, Object> summary = new LinkedHashMap<>();
+            if (monthSummary == null || monthSummary.getCount() == 0) {
+                summary.put("debited", 0);
+                summary.put("credited", 0);
+                summary.put("count", 0);
+            } else {
+                summary.putAll(getMonthTotals(monthSummary, currency, rateTables));
+                summary.put("count", monthSummary.getCount());
+            }
+            lines.write(Collections.singletonMap("summary", summary));
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
         }
     }
 
     /**
-     * get transactions in a month
-     * @param userAccountDetails - the bank account details for the user
-     * @param month - the month of which we need to get all the transactions
-     * @return A Stream of <code>PaymentDTO</code> transactions in the selected month.
+     * load the rate tables of every currency of a month for a streamed response, once before the first row. the
+     * stream is written on the thread of the response and not on the store query scheduler, so waiting for the
+     * tables here can't hold up their loads.
+     * @param monthSummary - the totals of the month, not empty
+     * @param currency - the currency that the month has to be converted to, <code>null</code> for the currency of
+     * the summary
+     * @param month - the month of the totals
+     * @return the rate tables of the month by base currency.
      */
-    private Stream<PaymentDTO> getMonthTransactions(BankAccountDTO userAccountDetails, YearMonth month){
-        return userAccountDetails
-                .getTransactions()
-                .stream()
-                .filter(payments -> {
-                    LocalDate endOfMonth = month.atEndOfMonth();
-                    LocalDate beginningOfMonth = month.atDay(1);
-                    return payments.getTransactionDate().isAfter(beginningOfMonth)
-                            && payments.getTransactionDate().isBefore(endOfMonth);
-                });
+    private Map<String, ExchangeRateTableDTO> getRateTables(MonthlySummaryDTO monthSummary, String currency,
+                                                            YearMonth month){
+        Set<String> currencies = new HashSet<>(monthSummary.dailyDebitedByCurrency().keySet());
+        currencies.addAll(monthSummary.dailyCreditedByCurrency().keySet());
+        String totalsCurrency = currency != null ? currency : monthSummary.getCurrency();
+        return forExService.getRateTablesAsync(currencies, totalsCurrency, month).block();
+    }
+
+    /**
+     * get the debited and credited totals of a month, converted to the provided currency with the rate of each day.
+     * the totals of every currency of the month are converted on their own and then added up.
+     * @param monthSummary - the totals of the month
+     * @param currency - the currency that the totals have to be converted to, <code>null</code> for the currency of
+     * the summary
+     * @param rateTables - the rate tables of the month, see <code>getRateTables</code>
+     * @return map with the <code>debited</code> and <code>credited</code> amounts.
+     */
+    private Map<String, Object> getMonthTotals(MonthlySummaryDTO monthSummary, String currency,
+                                               Map<String, ExchangeRateTableDTO> rateTables){
+        String totalsCurrency = currency != null ? currency : monthSummary.getCurrency();
+        long debitAmount = forExService.convertDailyAmounts(monthSummary.dailyDebitedByCurrency(), totalsCurrency,
+                rateTables);
+        long creditAmount = forExService.convertDailyAmounts(monthSummary.dailyCreditedByCurrency(), totalsCurrency,
+                rateTables);
+        return toTotals(debitAmount, creditAmount, totalsCurrency);
+    }
+
+    private Map<String, Object> toTotals(long debitAmount, long creditAmount, String currency){
+        Map<String, Object> totals = new LinkedHashMap<>();
+        totals.put("debited", MoneyUtil.toDecimal(debitAmount, currency));
+        totals.put("credited", MoneyUtil.toDecimal(creditAmount, currency));
+        totals.put("currency", currency);
+        return totals;
     }
 
     /**
@@ -149,12 +408,88 @@ public class PaymentService {
         return (int) pages;
     }
 
-    private ReadOnlyKeyValueStore<String, BankAccountDTO> getStore(){
-        return kafkaStreams.store(
-                StoreQueryParameters.fromNameAndType(
-                        PaymentTopology.PAYMENTS_STORE,
-                        QueryableStoreTypes.keyValueStore()
-                )
-        );
+    /**
+     * Get the running totals of a specific iban account in a single month
+     * @param iBan - string containing the iban account
+     * @param month - the month to retrieve the totals for
+     * @return <code>MonthlySummaryDTO</code> object with the totals of the month, or <code>null</code> if there
+     * were no transactions.
+     */
+    public MonthlySummaryDTO getMonthSummary(String iBan, YearMonth month){
+        return getMonthSummary(iBan, month, false);
+    }
+
+    private MonthlySummaryDTO getMonthSummary(String iBan, YearMonth month, boolean staleAllowed){
+        ReadOnlyKeyValueStore<String, MonthlySummaryDTO> store = getSummaryStore(staleAllowed);
+        return summaryReadTimer.record(() -> store.get(StoreKeys.monthKey(iBan, month)));
+    }
+
+    /**
+     * Get the running totals of many account months from the stores of this instance, in key order so the lookups
+     * of one account walk the same blocks of rocksdb
+     * @param monthKeys - the keys of the account months, see <code>StoreKeys.monthKey</code>
+     * @param staleAllowed - whether standby replicas and restoring stores may be queried
+     * @return the totals of every key, <code>null</code> for the months without transactions.
+     */
+    Map<String, MonthlySummaryDTO> getMonthSummaries(Collection<String> monthKeys, boolean staleAllowed){
+        ReadOnlyKeyValueStore<String, MonthlySummaryDTO> store = getSummaryStore(staleAllowed);
+        Map<String, MonthlySummaryDTO> summaries = new TreeMap<>();
+        monthKeys.forEach(monthKey -> summaries.put(monthKey, null));
+        summaries.replaceAll((monthKey, none) -> summaryReadTimer.record(() -> store.get(monthKey)));
+        return summaries;
     }
+
+    /**
+     * Get the transactions of many account months from the stores of this instance, in key order
+     * @param monthKeys - the keys of the account months, see <code>StoreKeys.monthKey</code>
+     * @param staleAllowed - whether standby replicas and restoring stores may be queried
+     * @return the transactions of every key, <code>null</code> for the months without transactions.
+     */
+    Map<String, BankAccountDTO> getBankTransactions(Collection<String> monthKeys, boolean staleAllowed){
+        ReadOnlyKeyValueStore<String, BankAccountDTO> store = getStore(staleAllowed);
+        Map<String, BankAccountDTO> buckets = new TreeMap<>();
+        monthKeys.forEach(monthKey -> buckets.put(monthKey, null));
+        buckets.replaceAll((monthKey, none) -> readBucket(store, monthKey));
+        return buckets;
+    }
+
+    /**
+     * Get the version of a month of an iban account, when this instance owns it. the version changes with every
+     * transaction of the month, so it can be checked before the month is read.
+     * @param iBan - string containing the iban account
+     * @param month - the month
+     * @return <code>Mono</code> with the <code>version</code> of the responses of the month, empty if another
+     * instance owns the month.
+     */
+    public Mono<Long> getMonthVersionAsync(String iBan, YearMonth month){
+        QueryRouter.Route route = queryRouter.locate(PaymentTopology.PAYMENTS_STORE, StoreKeys.monthKey(iBan, month));
+        if (!route.local()) {
+            return Mono.empty();
+        }
+        return Mono.fromCallable(() -> versionOf(getMonthSummary(iBan, month, route.staleAllowed())))
+                .subscribeOn(storeQueryScheduler);
+    }
+
+    /**
+     * the version of a month is the number of its transactions, transactions are never removed so it changes with
+     * every one that is added.
+     */
+    private static long versionOf(MonthlySummaryDTO monthSummary){
+        return monthSummary == null ? 0 : monthSummary.getCount();
+    }
+
+    private ReadOnlyKeyValueStore<String, MonthlySummaryDTO> getSummaryStore(boolean staleAllowed){
+        return queryRouter.store(PaymentTopology.SUMMARY_STORE, QueryableStoreTypes.keyValueStore(), staleAllowed);
+    }
+
+    private ReadOnlyKeyValueStore<String, BankAccountDTO> getStore(boolean staleAllowed){
+        return queryRouter.store(PaymentTopology.PAYMENTS_STORE, QueryableStoreTypes.keyValueStore(), staleAllowed);
+    }
+
+    /**
+     * a page of the transactions of a month, as read from the stores
+     */
+    record MonthPage(MonthlySummaryDTO summary, List<PaymentDTO> transactions, String next, int size) {
+    }
+
 }
@@ -0,0 +1,178 @@
+package com.jatinc.ebank.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.KafkaStreams;
+import org.apache.kafka.streams.KeyQueryMetadata;
+import org.apache.kafka.streams.StoreQueryParameters;
+import org.apache.kafka.streams.state.HostInfo;
+import org.apache.kafka.streams.state.QueryableStoreType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestClientException;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Finds the instance that has a key in its stores and runs the queries of that key there, on this instance when it
+ * owns the key and on the owner or its standby replicas otherwise.
+ */
+@Service
+@Slf4j
+public class QueryRouter {
+
+    private final KafkaStreams kafkaStreams;
+    private final RemoteQueryService remoteQueryService;
+    private final HostInfo localHostInfo;
+    private final Scheduler storeQueryScheduler;
+
+    @Autowired
+    public QueryRouter(KafkaStreams kafkaStreams, RemoteQueryService remoteQueryService, HostInfo localHostInfo,
+                       @Qualifier("storeQueryScheduler") Scheduler storeQueryScheduler){
+        this.kafkaStreams = kafkaStreams;
+        this.remoteQueryService = remoteQueryService;
+        this.localHostInfo = localHostInfo;
+        this.storeQueryScheduler = storeQueryScheduler;
+    }
+
+    /**
+     * find where a key of a store can be queried
+     * @param storeName - the store that is queried
+     * @param key - the key that is queried
+     * @return the route of the key.
+     */
+    public Route locate(String storeName, String key){
+//        the key is only in the stores of the instance that owns its partition (and its standby replicas)
+        KeyQueryMetadata owner = kafkaStreams.queryMetadataForKey(storeName, key, Serdes.String().serializer());
+
+        if(owner == null || KeyQueryMetadata.NOT_AVAILABLE.equals(owner)){
+//            the group is rebalancing, answer from whatever copy of the partition we have
+            return new Route(true, true, null, Collections.emptyList());
+        }
+        if(localHostInfo.equals(owner.activeHost()) || !remoteQueryService.isEnabled()){
+            return new Route(true, false, owner.activeHost(), Collections.emptyList());
+        }
+        return new Route(false, false, owner.activeHost(), List.copyOf(owner.standbyHosts()));
+    }
+
+    /**
+     * Run a query of a key of a store on the instance that owns it, falling back to its standby replicas
+     * @param storeName - the store that is queried
+     * @param key - the key that is queried
+     * @param iBan - string containing the iban account, for the logs
+     * @param localQuery - runs the query on the stores of this instance, given whether stale stores are allowed
+     * @param remoteQuery - runs the query on another instance, given the instance and whether it may answer
+     *                    from a standby replica
+     * @param unavailable - the result when no instance could answer
+     * @return the result of the first instance that answered.
+     */
+    public <T> T route(String storeName, String key, String iBan, Function<Boolean, T> localQuery,
+                       BiFunction<HostInfo, Boolean, T> remoteQuery, T unavailable){
+        Route route = locate(storeName, key);
+        if(route.local()){
+            return localQuery.apply(route.staleAllowed());
+        }
+
+        try{
+            return remoteQuery.apply(route.activeHost(), false);
+        }catch(RestClientException ex){
+            log.warn("Instance {} owning {} is not reachable, trying its standby replicas", route.activeHost(),
+                    iBan, ex);
+        }
+
+        for(HostInfo standbyHost : route.standbyHosts()){
+            if(localHostInfo.equals(standbyHost)){
+                return localQuery.apply(true);
+            }
+            try{
+                return remoteQuery.apply(standbyHost, true);
+            }catch(RestClientException ex){
+                log.warn("Standby instance {} for {} is not reachable", standbyHost, iBan, ex);
+            }
+        }
+        return unavailable;
+    }
+
+    /**
+     * Run a query of a key of a store on the instance that owns it without blocking the caller, the same as
+     * <code>route</code>. the local query is expected not to block, the remote queries do and run on the store
+     * query scheduler.
+     * @return <code>Mono</code> with the result of the first instance that answered.
+     */
+    public <T> Mono<T> routeAsync(String storeName, String key, String iBan, Function<Boolean, Mono<T>> localQuery,
+                                  BiFunction<HostInfo, Boolean, T> remoteQuery, T unavailable){
+        Route route = locate(storeName, key);
+        if(route.local()){
+            return localQuery.apply(route.staleAllowed());
+        }
+
+        return Mono.fromCallable(() -> remoteQuery.apply(route.activeHost(), false))
+                .subscribeOn(storeQueryScheduler)
+                .onErrorResume(RestClientException.class, ex -> {
+                    log.warn("Instance {} owning {} is not reachable, trying its standby replicas",
+                            route.activeHost(), iBan, ex);
+                    return routeToStandby(route.standbyHosts(), 0, iBan, localQuery, remoteQuery, unavailable);
+                });
+    }
+
+    private <T> Mono<T> routeToStandby(List<HostInfo> standbyHosts, int position, String iBan,
+                                       Function<Boolean, Mono<T>> localQuery,
+                                       BiFunction<HostInfo, Boolean, T> remoteQuery, T unavailable){
+        if(position == standbyHosts.size()){
+            return Mono.just(unavailable);
+        }
+        HostInfo standbyHost = standbyHosts.get(position);
+        if(localHostInfo.equals(standbyHost)){
+            return localQuery.apply(true);
+        }
+        return Mono.fromCallable(() -> remoteQuery.apply(standbyHost, true))
+                .subscribeOn(storeQueryScheduler)
+                .onErrorResume(RestClientException.class, ex -> {
+                    log.warn("Standby instance {} for {} is not reachable", standbyHost, iBan, ex);
+                    return routeToStandby(standbyHosts, position + 1, iBan, localQuery, remoteQuery, unavailable);
+                });
+    }
+
+    /**
+     * get a store of this instance
+     * @param storeName - the name of the store
+     * @param storeType - the type of the store
+     * @param staleAllowed - whether standby replicas and restoring stores may be queried
+     * @return the store.
+     */
+    public <T> T store(String storeName, QueryableStoreType<T> storeType, boolean staleAllowed){
+        StoreQueryParameters<T> parameters = StoreQueryParameters.fromNameAndType(storeName, storeType);
+        return kafkaStreams.store(staleAllowed ? parameters.enableStaleStores() : parameters);
+    }
+
+    /**
+     * the timer of the reads of a store
+     * @param storeName - the name of the store
+     * @param meterRegistry - the registry of the timer
+     * @return the timer.
+     */
+    public static Timer storeReadTimer(String storeName, MeterRegistry meterRegistry){
+        return Timer.builder("payment.store.get")
+                .description("time to read and deserialize a value from a state store")
+                .tag("store", storeName)
+                .register(meterRegistry);
+    }
+
+    /**
+     * where a key can be queried
+     * @param local - whether it is queried on this instance
+     * @param staleAllowed - whether the stores of this instance may be stale
+     * @param activeHost - the instance that owns the key, <code>null</code> while the group is rebalancing
+     * @param standbyHosts - the instances with a standby replica of the key, when another instance owns it
+     */
+    public record Route(boolean local, boolean staleAllowed, HostInfo activeHost, List<HostInfo> standbyHosts) {
+    }
+}
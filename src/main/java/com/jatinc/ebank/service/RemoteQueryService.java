@@ -0,0 +1,232 @@
+package com.jatinc.ebank.service;
+
+import com.jatinc.ebank.dto.RequestBatchItemDTO;
+import com.jatinc.ebank.topology.SpendingWindow;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.streams.state.HostInfo;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Queries the stores of other instances through their <code>/internal</code> endpoints.
+ */
+@Service
+@Slf4j
+public class RemoteQueryService {
+
+    public static final String INTERNAL_SECRET_HEADER = "X-Internal-Secret";
+
+    private static final ParameterizedTypeReference<Map<String, Object>> RESPONSE_TYPE =
+            new ParameterizedTypeReference<>() {};
+    private static final ParameterizedTypeReference<List<Map<String, Object>>> BATCH_RESPONSE_TYPE =
+            new ParameterizedTypeReference<>() {};
+
+    private final RestTemplate restTemplate;
+
+    @Value("${payment.routing.internal-secret:}")
+    private String internalSecret;
+
+    @Autowired
+    public RemoteQueryService(@Qualifier("instanceRestTemplate") RestTemplate restTemplate){
+        this.restTemplate = restTemplate;
+    }
+
+    /**
+     * get the transactions of an iban account in a month from the instance that has them in its stores
+     * @param host - the instance to query
+     * @param staleAllowed - whether the instance may answer from a standby replica
+     * @return the response of the instance, in the same format as
+     * <code>PaymentService.getUserTransactionsByMonthAsync</code>.
+     */
+    public Map<String, Object> getUserTransactionsByMonth(HostInfo host, boolean staleAllowed, String iBan,
+                                                          YearMonth month, int page, int size, String cursor,
+                                                          String currency){
+        URI uri = UriComponentsBuilder.newInstance()
+                .scheme("http")
+                .host(host.host())
+                .port(host.port())
+                .path("/internal/transactions")
+                .queryParam("iban", iBan)
+                .queryParam("month", month.toString())
+                .queryParam("page", page)
+                .queryParam("size", size)
+                .queryParamIfPresent("cursor", Optional.ofNullable(cursor))
+                .queryParamIfPresent("currency", Optional.ofNullable(currency))
+                .queryParam("stale", staleAllowed)
+                .encode()
+                .build()
+                .toUri();
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(INTERNAL_SECRET_HEADER, internalSecret);
+
+        log.debug("Forwarding query for {} in {} to {}", iBan, month, host);
+        return restTemplate.exchange(uri, HttpMethod.GET, new HttpEntity<>(headers), RESPONSE_TYPE).getBody();
+    }
+
+    /**
+     * get the transactions of many iban accounts and months from an instance that has all of them in its stores
+     * @param host - the instance to query
+     * @param staleAllowed - whether the instance may answer from a standby replica
+     * @param items - the accounts and months to query
+     * @return the results of the instance, in the same format as
+     * <code>BatchQueryService.getUserTransactionsBatch</code> and indexed by position in <code>items</code>.
+     */
+    public List<Map<String, Object>> getUserTransactionsBatch(HostInfo host, boolean staleAllowed,
+                                                              List<RequestBatchItemDTO> items){
+        URI uri = UriComponentsBuilder.newInstance()
+                .scheme("http")
+                .host(host.host())
+                .port(host.port())
+                .path("/internal/transactions/batch")
+                .queryParam("stale", staleAllowed)
+                .encode()
+                .build()
+                .toUri();
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(INTERNAL_SECRET_HEADER, internalSecret);
+        headers.setContentType(MediaType.APPLICATION_JSON);
+
+        log.debug("Forwarding batch of {} items to {}", items.size(), host);
+        return restTemplate.exchange(uri, HttpMethod.POST, new HttpEntity<>(items, headers), BATCH_RESPONSE_TYPE)
+                .getBody();
+    }
+
+    /**
+     * get the balance of an iban account over a range of days from the instance that has it in its stores
+     * @param host - the instance to query
+     * @param staleAllowed - whether the instance may answer from a standby replica
+     * @return the response of the instance, in the same format as
+     * <code>BalanceService.getBalanceAsync</code>.
+     */
+    public Map<String, Object> getBalance(HostInfo host, boolean staleAllowed, String iBan, LocalDate from,
+                                          LocalDate to){
+        URI uri = UriComponentsBuilder.newInstance()
+                .scheme("http")
+                .host(host.host())
+                .port(host.port())
+                .path("/internal/balance")
+                .queryParam("iban", iBan)
+                .queryParam("from", from.toString())
+                .queryParam("to", to.toString())
+                .queryParam("stale", staleAllowed)
+                .encode()
+                .build()
+                .toUri();
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(INTERNAL_SECRET_HEADER, internalSecret);
+
+        log.debug("Forwarding balance query for {} from {} to {} to {}", iBan, from, to, host);
+        return restTemplate.exchange(uri, HttpMethod.GET, new HttpEntity<>(headers), RESPONSE_TYPE).getBody();
+    }
+
+    /**
+     * get the spending of an iban account from the instance that has it in its stores
+     * @param host - the instance to query
+     * @param staleAllowed - whether the instance may answer from a standby replica
+     * @return the response of the instance, in the same format as
+     * <code>SpendingService.getSpendingAsync</code>.
+     */
+    public Map<String, Object> getSpending(HostInfo host, boolean staleAllowed, String iBan, SpendingWindow window,
+                                           Instant from, Instant to){
+        URI uri = UriComponentsBuilder.newInstance()
+                .scheme("http")
+                .host(host.host())
+                .port(host.port())
+                .path("/internal/spending")
+                .queryParam("iban", iBan)
+                .queryParam("window", window.name())
+                .queryParam("from", from.toString())
+                .queryParam("to", to.toString())
+                .queryParam("stale", staleAllowed)
+                .encode()
+                .build()
+                .toUri();
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(INTERNAL_SECRET_HEADER, internalSecret);
+
+        log.debug("Forwarding spending query for {} by {} to {}", iBan, window, host);
+        return restTemplate.exchange(uri, HttpMethod.GET, new HttpEntity<>(headers), RESPONSE_TYPE).getBody();
+    }
+
+    /**
+     * stream the transactions of an iban account in a month from the instance that has them in its stores,
+     * copying its response into the provided stream as it arrives
+     * @param host - the instance to query
+     * @param staleAllowed - whether the instance may answer from a standby replica
+     * @param outputStream - the stream the response of the instance is copied to
+     * @throws UncheckedIOException if the response broke off after part of it was copied, the query can't be
+     * retried on another instance then.
+     */
+    public void streamUserTransactionsByMonth(HostInfo host, boolean staleAllowed, String iBan, YearMonth month,
+                                              String cursor, String currency, OutputStream outputStream){
+        URI uri = UriComponentsBuilder.newInstance()
+                .scheme("http")
+                .host(host.host())
+                .port(host.port())
+                .path("/internal/transactions/stream")
+                .queryParam("iban", iBan)
+                .queryParam("month", month.toString())
+                .queryParamIfPresent("cursor", Optional.ofNullable(cursor))
+                .queryParamIfPresent("currency", Optional.ofNullable(currency))
+                .queryParam("stale", staleAllowed)
+                .encode()
+                .build()
+                .toUri();
+
+        log.debug("Forwarding streamed query for {} in {} to {}", iBan, month, host);
+        restTemplate.execute(uri, HttpMethod.GET,
+                request -> request.getHeaders().set(INTERNAL_SECRET_HEADER, internalSecret),
+                response -> {
+                    try {
+                        response.getBody().transferTo(outputStream);
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                    return null;
+                });
+    }
+
+    /**
+     * check the secret another instance sent along with an internal query
+     * @param secret - the value of the <code>X-Internal-Secret</code> header
+     * @return whether the query comes from one of our instances.
+     */
+    public boolean isInternalSecret(String secret){
+        return !internalSecret.isBlank() && secret != null
+                && MessageDigest.isEqual(internalSecret.getBytes(StandardCharsets.UTF_8),
+                secret.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return whether an internal secret is configured, without it we can't query other instances.
+     */
+    public boolean isEnabled(){
+        return !internalSecret.isBlank();
+    }
+}
@@ -0,0 +1,100 @@
+package com.jatinc.ebank.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The responses of month queries answered from the stores of this instance, so a month that didn't change isn't
+ * read, converted and built again for every request.
+ *
+ * responses are grouped by store key, every month keeps up to <code>pagesPerMonth</code> responses (pages,
+ * cursors and currencies) together with the version of the month they were built from. the version is the number of
+ * transactions in the month, which only ever grows, so a response is only used while the month still has the same
+ * version. the months are dropped as soon as the topology sees them change, see <code>invalidate</code>.
+ */
+@Service
+public class ResponseCache {
+
+    public static final String CACHE_NAME = "month-responses";
+
+    private final Cache<String, MonthResponses> months;
+    private final int pagesPerMonth;
+
+    @Autowired
+    public ResponseCache(@Value("${payment.response-cache.max-months:10000}") long maxMonths,
+                         @Value("${payment.response-cache.pages-per-month:16}") int pagesPerMonth,
+                         @Value("${payment.response-cache.expire-after-access:10m}") Duration expireAfterAccess,
+                         MeterRegistry meterRegistry){
+        this.pagesPerMonth = pagesPerMonth;
+        this.months = Caffeine.newBuilder()
+                .maximumSize(maxMonths)
+                .expireAfterAccess(expireAfterAccess)
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, months, CACHE_NAME);
+    }
+
+    /**
+     * get a response built from the current version of a month
+     * @param monthKey - the store key of the month
+     * @param query - the page, size, cursor and currency of the query, see <code>queryKey</code>
+     * @param version - the current version of the month
+     * @return the response, or <code>null</code> if there is none for this version.
+     */
+    public Map<String, Object> get(String monthKey, String query, long version){
+        MonthResponses responses = months.getIfPresent(monthKey);
+        if(responses == null || responses.version() != version){
+            return null;
+        }
+        return responses.pages().get(query);
+    }
+
+    /**
+     * keep a response, unless the cache already has a newer version of the month
+     * @param monthKey - the store key of the month
+     * @param query - the page, size, cursor and currency of the query, see <code>queryKey</code>
+     * @param version - the version of the month the response was built from
+     * @param response - the response
+     */
+    public void put(String monthKey, String query, long version, Map<String, Object> response){
+        MonthResponses responses = months.asMap().compute(monthKey, (key, current) ->
+                current == null || current.version() < version
+                        ? new MonthResponses(version, new ConcurrentHashMap<>())
+                        : current);
+        if(responses.version() == version && responses.pages().size() < pagesPerMonth){
+            responses.pages().put(query, response);
+        }
+    }
+
+    /**
+     * drop the responses of a month that changed
+     * @param monthKey - the store key of the month
+     */
+    public void invalidate(String monthKey){
+        months.invalidate(monthKey);
+    }
+
+    /**
+     * get the key of the options of a month query
+     * @return string identifying the page, size, cursor and currency.
+     */
+    public static String queryKey(int page, int size, String cursor, String currency){
+        return (cursor != null ? "c:" + cursor : "p:" + page) + "|" + size + "|" + currency;
+    }
+
+    /**
+     * the responses of one version of a month, by <code>queryKey</code>
+     */
+    private record MonthResponses(long version, Map<String, Map<String, Object>> pages) {
+    }
+}
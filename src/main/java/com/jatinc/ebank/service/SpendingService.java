@@ -0,0 +1,120 @@
+package com.jatinc.ebank.service;
+
+import com.jatinc.ebank.dto.SpendingDTO;
+import com.jatinc.ebank.topology.SpendingWindow;
+import com.jatinc.ebank.util.MoneyUtil;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.errors.InvalidStateStoreException;
+import org.apache.kafka.streams.state.QueryableStoreTypes;
+import org.apache.kafka.streams.state.ReadOnlyWindowStore;
+import org.apache.kafka.streams.state.WindowStoreIterator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Answers the spending queries of an account from the spending windows of the topology.
+ */
+@Service
+@Slf4j
+public class SpendingService {
+
+    private final QueryRouter queryRouter;
+    private final RemoteQueryService remoteQueryService;
+    private final Scheduler storeQueryScheduler;
+    private final Map<SpendingWindow, Timer> spendingReadTimers = new EnumMap<>(SpendingWindow.class);
+
+    @Autowired
+    public SpendingService(QueryRouter queryRouter, RemoteQueryService remoteQueryService,
+                           @Qualifier("storeQueryScheduler") Scheduler storeQueryScheduler,
+                           MeterRegistry meterRegistry){
+        this.queryRouter = queryRouter;
+        this.remoteQueryService = remoteQueryService;
+        this.storeQueryScheduler = storeQueryScheduler;
+        for(SpendingWindow window : SpendingWindow.values()){
+            spendingReadTimers.put(window, QueryRouter.storeReadTimer(window.getStoreName(), meterRegistry));
+        }
+    }
+
+    /**
+     * Get the spending of an iban account in the windows of one size that start within a range, without blocking
+     * the caller. the store is read on the store query scheduler.
+     * @param iBan - string containing the iban account
+     * @param window - the windows to read
+     * @param from - the earliest start of a window
+     * @param to - the latest start of a window (inclusive)
+     * @return - <code>Mono</code> with the <code>windows</code>, each with its <code>start</code> and
+     * <code>end</code>, the <code>count</code> of transactions, the <code>debited</code> total and the largest single
+     * debit as <code>max-debit</code>, both by currency, ordered by start. windows without transactions are left out.
+     */
+    public Mono<Map<String, Object>> getSpendingAsync(String iBan, SpendingWindow window, Instant from, Instant to){
+        return queryRouter.routeAsync(window.getStoreName(), iBan, iBan,
+                staleAllowed -> Mono.fromCallable(() -> getLocalSpending(iBan, window, from, to, staleAllowed))
+                        .subscribeOn(storeQueryScheduler),
+                (host, staleAllowed) -> remoteQueryService.getSpending(host, staleAllowed, iBan, window, from, to),
+                Collections.emptyMap());
+    }
+
+    /**
+     * Get the spending of an iban account from the stores of this instance only. the windows are aggregated as the
+     * payments arrive, so this is one lookup per window and never reads the transactions.
+     * @param iBan - string containing the iban account
+     * @param window - the windows to read
+     * @param from - the earliest start of a window
+     * @param to - the latest start of a window (inclusive)
+     * @param staleAllowed - whether standby replicas and restoring stores may be queried
+     * @return - same as <code>getSpendingAsync</code>.
+     */
+    public Map<String, Object> getLocalSpending(String iBan, SpendingWindow window, Instant from, Instant to,
+                                                boolean staleAllowed){
+        try{
+            ReadOnlyWindowStore<String, SpendingDTO> store = queryRouter.store(window.getStoreName(),
+                    QueryableStoreTypes.windowStore(), staleAllowed);
+            List<Map<String, Object>> windows = spendingReadTimers.get(window).record(() -> {
+                List<Map<String, Object>> results = new ArrayList<>();
+                try(WindowStoreIterator<SpendingDTO> spending = store.fetch(iBan, from, to)){
+                    while(spending.hasNext()){
+                        KeyValue<Long, SpendingDTO> entry = spending.next();
+                        results.add(toSpending(Instant.ofEpochMilli(entry.key), window, entry.value));
+                    }
+                }
+                return results;
+            });
+
+            Map<String, Object> response = new LinkedHashMap<>();
+            response.put("iban", iBan);
+            response.put("window", window.name());
+            response.put("windows", windows);
+            return response;
+        }catch(InvalidStateStoreException ex){
+//            same as the month queries, a store that is restoring is not an account without transactions
+            throw ex;
+        }catch(Exception ex){
+            log.error("error", ex);
+            return Collections.emptyMap();
+        }
+    }
+
+    private static Map<String, Object> toSpending(Instant start, SpendingWindow window, SpendingDTO spending){
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("start", start.toString());
+        result.put("end", start.plus(window.getSize()).toString());
+        result.put("count", spending.getCount());
+        result.put("debited", MoneyUtil.toDecimals(spending.debitedByCurrency()));
+        result.put("max-debit", MoneyUtil.toDecimals(spending.maxDebitByCurrency()));
+        return result;
+    }
+}
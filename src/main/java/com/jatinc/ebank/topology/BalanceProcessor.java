@@ -0,0 +1,83 @@
+package com.jatinc.ebank.topology;
+
+import com.jatinc.ebank.dto.BalanceMonthDTO;
+import com.jatinc.ebank.dto.PaymentDTO;
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.processor.api.Processor;
+import org.apache.kafka.streams.processor.api.ProcessorContext;
+import org.apache.kafka.streams.processor.api.Record;
+import org.apache.kafka.streams.state.KeyValueIterator;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.StoreBuilder;
+import org.apache.kafka.streams.state.Stores;
+
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the daily closing balances of every account in one <code>BalanceMonthDTO</code> per iban and month, keyed by
+ * <code>StoreKeys.monthKey</code>.
+ *
+ * the records have to be keyed by iban, so all the months of an account are in the same task and can be found with a
+ * range scan. a transaction rewrites the month it belongs to, a new month starts from the closing balances of the
+ * latest month before it. a back-dated transaction also moves the balances of every later month of the account, which
+ * for a transaction of the current month are none.
+ */
+public class BalanceProcessor implements Processor<String, PaymentDTO, Void, Void> {
+
+    private KeyValueStore<String, BalanceMonthDTO> balances;
+
+    /**
+     * get the builder of the store with the balance months
+     * @param balanceSerde - the serde of the balance months
+     * @return builder for the <code>balance-month-store</code>.
+     */
+    public static StoreBuilder<KeyValueStore<String, BalanceMonthDTO>> storeBuilder(
+            Serde<BalanceMonthDTO> balanceSerde){
+        return Stores.keyValueStoreBuilder(
+                        Stores.persistentKeyValueStore(PaymentTopology.BALANCE_STORE),
+                        Serdes.String(),
+                        balanceSerde)
+//                like the stores of the aggregations, so the record cache merges the updates of a month
+                .withCachingEnabled();
+    }
+
+    @Override
+    public void init(ProcessorContext<Void, Void> context){
+        this.balances = context.getStateStore(PaymentTopology.BALANCE_STORE);
+    }
+
+    @Override
+    public void process(Record<String, PaymentDTO> record){
+        PaymentDTO transaction = record.value();
+        String iBan = transaction.getIBan();
+        YearMonth month = YearMonth.from(transaction.getTransactionDate());
+        String monthKey = StoreKeys.monthKey(iBan, month);
+
+        BalanceMonthDTO balanceMonth = balances.get(monthKey);
+        if(balanceMonth == null){
+            balanceMonth = BalanceMonthDTO.open(iBan, month, latestMonthBefore(iBan, month));
+        }
+        balances.put(monthKey, balanceMonth.process(transaction));
+
+        List<KeyValue<String, BalanceMonthDTO>> laterMonths = new ArrayList<>();
+        try(KeyValueIterator<String, BalanceMonthDTO> months = balances.range(
+                StoreKeys.monthKey(iBan, month.plusMonths(1)), StoreKeys.lastMonthKey(iBan))){
+            months.forEachRemaining(laterMonths::add);
+        }
+        for(KeyValue<String, BalanceMonthDTO> laterMonth : laterMonths){
+            laterMonth.value.carry(transaction.getCurrency(), -transaction.getAmountMinor());
+            balances.put(laterMonth.key, laterMonth.value);
+        }
+    }
+
+    private BalanceMonthDTO latestMonthBefore(String iBan, YearMonth month){
+        try(KeyValueIterator<String, BalanceMonthDTO> months = balances.reverseRange(
+                StoreKeys.firstMonthKey(iBan), StoreKeys.monthKey(iBan, month.minusMonths(1)))){
+            return months.hasNext() ? months.next().value : null;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.jatinc.ebank.topology;
+
+import io.micrometer.core.instrument.Counter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.processor.api.FixedKeyProcessor;
+import org.apache.kafka.streams.processor.api.FixedKeyProcessorContext;
+import org.apache.kafka.streams.processor.api.FixedKeyRecord;
+import org.apache.kafka.streams.state.StoreBuilder;
+import org.apache.kafka.streams.state.Stores;
+import org.apache.kafka.streams.state.WindowStore;
+import org.apache.kafka.streams.state.WindowStoreIterator;
+
+import java.time.Duration;
+
+/**
+ * Drops the records whose key was already seen within the dedup window, so a payment that is produced again (a
+ * producer retry, or a replay of the topic) is only added to the aggregates once.
+ *
+ * the keys are kept in a window store with the timestamp of the record they were seen in, and expire together with
+ * the segments of the store once they are older than the window. the source topic is keyed by
+ * <code>paymentId</code>, so every copy of a payment ends up in the same partition and the same store.
+ *
+ * with <code>at_least_once</code> a crash can leave a key in the store while the payment itself never made it to the
+ * aggregates, which then drops the payment when it is processed again. only <code>exactly_once_v2</code> commits
+ * the store and the records forwarded to the aggregates together.
+ * @param <V> the type of the values
+ */
+@Slf4j
+public class DeduplicationProcessor<V> implements FixedKeyProcessor<String, V, V> {
+
+    public static final String DEDUP_STORE = "payment-dedup-store";
+
+    private final long windowMs;
+    private final Counter duplicates;
+
+    private FixedKeyProcessorContext<String, V> context;
+    private WindowStore<String, Long> seenKeys;
+
+    public DeduplicationProcessor(Duration window, Counter duplicates){
+        this.windowMs = window.toMillis();
+        this.duplicates = duplicates;
+    }
+
+    /**
+     * get the builder of the store that remembers the keys
+     * @param window - how long a key is remembered
+     * @return builder for the <code>payment-dedup-store</code>.
+     */
+    public static StoreBuilder<WindowStore<String, Long>> storeBuilder(Duration window){
+        return Stores.windowStoreBuilder(
+                Stores.persistentWindowStore(DEDUP_STORE, window, window, false),
+                Serdes.String(),
+                Serdes.Long());
+    }
+
+    @Override
+    public void init(FixedKeyProcessorContext<String, V> context){
+        this.context = context;
+        this.seenKeys = context.getStateStore(DEDUP_STORE);
+    }
+
+    @Override
+    public void process(FixedKeyRecord<String, V> record){
+        String key = record.key();
+        if(key == null){
+//            nothing to recognise the payment by, it can't be deduplicated
+            context.forward(record);
+            return;
+        }
+
+        long timestamp = record.timestamp();
+//        copies can be produced before or after the first one, so the window is looked at on both sides
+        try(WindowStoreIterator<Long> seen = seenKeys.fetch(key, Math.max(0, timestamp - windowMs),
+                timestamp + windowMs)){
+            if(seen.hasNext()){
+                duplicates.increment();
+                log.debug("Dropping payment {} that was already seen at {}", key, seen.next().value);
+                return;
+            }
+        }
+
+        seenKeys.put(key, timestamp, timestamp);
+        context.forward(record);
+    }
+}
@@ -0,0 +1,173 @@
+package com.jatinc.ebank.topology;
+
+import com.jatinc.ebank.dto.MonthlySummaryDTO;
+import com.jatinc.ebank.dto.SummaryEventDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.processor.PunctuationType;
+import org.apache.kafka.streams.processor.api.Processor;
+import org.apache.kafka.streams.processor.api.ProcessorContext;
+import org.apache.kafka.streams.processor.api.Record;
+import org.apache.kafka.streams.state.KeyValueIterator;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.StoreBuilder;
+import org.apache.kafka.streams.state.Stores;
+import org.apache.kafka.streams.state.TimestampedKeyValueStore;
+import org.apache.kafka.streams.state.ValueAndTimestamp;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Publishes a <code>CLOSED</code> summary for every account month once the month is over and its grace period has
+ * passed, on a stream time punctuation.
+ *
+ * a month is closed once the stream time (the latest record timestamp of the partition) is past its end plus the
+ * grace period. the last month that was closed is kept in the <code>month-close-store</code>, so after a restart or
+ * a move to another instance a month is not closed again. the first time a partition runs only the latest month that
+ * can be closed is, the months before it are not published.
+ *
+ * the <code>monthly-summary-store</code> is keyed by account first and keeps every month, so the accounts of a month
+ * are not looked up in it by scanning. every summary update of a month that is still open adds its key to the
+ * <code>month-open-accounts-store</code>, keyed by month first, and closing a month only reads the keys of that
+ * month from it (and then removes them). transactions that arrive after their month was closed still update the
+ * summary and are published as <code>UPDATED</code>.
+ */
+@Slf4j
+public class MonthCloseProcessor implements Processor<String, MonthlySummaryDTO, String, SummaryEventDTO> {
+
+    public static final String CLOSE_STORE = "month-close-store";
+    public static final String OPEN_ACCOUNTS_STORE = "month-open-accounts-store";
+
+    private static final String LAST_CLOSED_KEY = "last-closed-month";
+    private static final Duration CHECK_INTERVAL = Duration.ofMinutes(1);
+
+    private final Duration grace;
+
+    private ProcessorContext<String, SummaryEventDTO> context;
+    private TimestampedKeyValueStore<String, MonthlySummaryDTO> summaries;
+    private KeyValueStore<String, String> closedMonths;
+    private KeyValueStore<String, String> openAccounts;
+    private YearMonth lastClosed;
+    private Counter closedSummaries;
+
+    public MonthCloseProcessor(Duration grace){
+        this.grace = grace;
+    }
+
+    /**
+     * get the builder of the store that remembers the last closed month
+     * @return builder for the <code>month-close-store</code>.
+     */
+    public static StoreBuilder<KeyValueStore<String, String>> storeBuilder(){
+        return Stores.keyValueStoreBuilder(
+                Stores.persistentKeyValueStore(CLOSE_STORE),
+                Serdes.String(),
+                Serdes.String());
+    }
+
+    /**
+     * get the builder of the store with the accounts of every month that is not closed yet
+     * @return builder for the <code>month-open-accounts-store</code>, keyed by <code>yyyy-MM|IBAN|yyyy-MM</code>
+     * with the summary key as value.
+     */
+    public static StoreBuilder<KeyValueStore<String, String>> openAccountsStoreBuilder(){
+        return Stores.keyValueStoreBuilder(
+                Stores.persistentKeyValueStore(OPEN_ACCOUNTS_STORE),
+                Serdes.String(),
+                Serdes.String());
+    }
+
+    @Override
+    public void init(ProcessorContext<String, SummaryEventDTO> context){
+        this.context = context;
+        this.summaries = context.getStateStore(PaymentTopology.SUMMARY_STORE);
+        this.closedMonths = context.getStateStore(CLOSE_STORE);
+        this.openAccounts = context.getStateStore(OPEN_ACCOUNTS_STORE);
+        String lastClosedMonth = closedMonths.get(LAST_CLOSED_KEY);
+        this.lastClosed = lastClosedMonth == null ? null : YearMonth.parse(lastClosedMonth);
+        this.closedSummaries = Counter.builder("payment.summary.closed")
+                .description("account months published as closed to the monthly summaries topic")
+                .register(Metrics.globalRegistry);
+
+        context.schedule(CHECK_INTERVAL, PunctuationType.STREAM_TIME, this::closeMonths);
+    }
+
+    @Override
+    public void process(Record<String, MonthlySummaryDTO> record){
+//        the summaries themselves are read from the store when a month closes, only the account is remembered
+        if(record.value() != null){
+            addOpenAccount(record.key());
+        }
+    }
+
+    private void addOpenAccount(String summaryKey){
+        YearMonth month = StoreKeys.monthOf(summaryKey);
+        if(lastClosed == null || month.isAfter(lastClosed)){
+            openAccounts.putIfAbsent(openAccountKey(month, summaryKey), summaryKey);
+        }
+    }
+
+    private static String openAccountKey(YearMonth month, String summaryKey){
+        return month + StoreKeys.SEPARATOR + summaryKey;
+    }
+
+    /**
+     * close every month that ended more than the grace period before the stream time, in order
+     * @param streamTime - the stream time of the partition
+     */
+    private void closeMonths(long streamTime){
+        YearMonth closable = YearMonth.from(Instant.ofEpochMilli(streamTime).minus(grace).atZone(ZoneOffset.UTC))
+                .minusMonths(1);
+        boolean firstRun = lastClosed == null;
+        YearMonth month = firstRun ? closable : lastClosed.plusMonths(1);
+
+        for(; !month.isAfter(closable); month = month.plusMonths(1)){
+            if(firstRun){
+//                the months before the first one that is closed are never published, their accounts are dropped
+                dropOpenAccountsBefore(month);
+                firstRun = false;
+            }
+            closeMonth(month, streamTime);
+            closedMonths.put(LAST_CLOSED_KEY, month.toString());
+            lastClosed = month;
+        }
+    }
+
+    private void closeMonth(YearMonth month, long streamTime){
+        int closed = 0;
+        List<String> closedKeys = new ArrayList<>();
+        try(KeyValueIterator<String, String> accounts = openAccounts.prefixScan(
+                openAccountKey(month, ""), Serdes.String().serializer())){
+            while(accounts.hasNext()){
+                KeyValue<String, String> account = accounts.next();
+                closedKeys.add(account.key);
+                ValueAndTimestamp<MonthlySummaryDTO> summary = summaries.get(account.value);
+                if(summary != null){
+                    context.forward(new Record<>(account.value,
+                            new SummaryEventDTO(SummaryEventDTO.Type.CLOSED, summary.value()), streamTime));
+                    closed++;
+                }
+            }
+        }
+        closedKeys.forEach(openAccounts::delete);
+        closedSummaries.increment(closed);
+        log.info("Closed {} with {} account summaries in partition {}", month, closed,
+                context.taskId().partition());
+    }
+
+    private void dropOpenAccountsBefore(YearMonth month){
+        List<String> droppedKeys = new ArrayList<>();
+        try(KeyValueIterator<String, String> accounts = openAccounts.range(null, openAccountKey(month, ""))){
+            accounts.forEachRemaining(account -> droppedKeys.add(account.key));
+        }
+        droppedKeys.forEach(openAccounts::delete);
+    }
+}
@@ -1,53 +1,232 @@
 package com.jatinc.ebank.topology;
 
+import com.jatinc.ebank.dto.BalanceMonthDTO;
 import com.jatinc.ebank.dto.BankAccountDTO;
+import com.jatinc.ebank.dto.MonthlySummaryDTO;
 import com.jatinc.ebank.dto.PaymentDTO;
-import com.jatinc.ebank.serdes.JsonSerde;
+import com.jatinc.ebank.dto.SpendingDTO;
+import com.jatinc.ebank.dto.SummaryEventDTO;
+import com.jatinc.ebank.serdes.SerdeFormat;
+import com.jatinc.ebank.serdes.ValueSerdes;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Metrics;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.serialization.Serde;
 import org.apache.kafka.common.serialization.Serdes;
 import org.apache.kafka.common.utils.Bytes;
 import org.apache.kafka.streams.StreamsBuilder;
 import org.apache.kafka.streams.Topology;
 import org.apache.kafka.streams.kstream.Consumed;
+import org.apache.kafka.streams.kstream.Grouped;
+import org.apache.kafka.streams.kstream.KGroupedStream;
+import org.apache.kafka.streams.kstream.KStream;
+import org.apache.kafka.streams.kstream.KTable;
 import org.apache.kafka.streams.kstream.Materialized;
+import org.apache.kafka.streams.kstream.Named;
+import org.apache.kafka.streams.kstream.Produced;
+import org.apache.kafka.streams.kstream.Repartitioned;
+import org.apache.kafka.streams.kstream.Suppressed;
 import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.WindowStore;
 
 @Slf4j
 public class PaymentTopology {
 
     public static final String PAYMENTS_STORE = "transaction-store";
+    public static final String SUMMARY_STORE = "monthly-summary-store";
+    public static final String BALANCE_STORE = "balance-month-store";
+    public static final String EXCHANGE_RATE_STORE = "exchange-rate-store";
+
+    public static final String TRANSACTIONS_TOPIC = "transactions";
+    public static final String EXCHANGE_RATES_TOPIC = "exchange-rates";
+    public static final String SUMMARIES_TOPIC = "monthly-summaries";
     
     /**
-     * we define a <code>JsonSerde</code> for our <code>PaymentDTO</code> and <code>BankAccountDTO</code> 
-     * to allow the values from the event stream to be deserialized.
-     * 
-     * since the key of the event also serves as a id for each transaction, we have to also capture
-     * the id and store it in the created <code>PaymentDTO</code> for future reference.
-     * 
-     * we aggregate all transactions into a <code>BankAccountDTO</code> by filtering the iban number used,
-     * so we can store all the transactions related to an iban into one object for easier reference.
-     * 
-     * We also create a local state store for all of our <code>BankAccountDTO</code>s and <code>PaymentDTO</code>s
-     * 
+     * build the topology reading and storing everything as json
      * @return streams topology
      */
     public static Topology buildTopology(){
+        return buildTopology(SerdeFormat.JSON, SerdeFormat.JSON);
+    }
+
+    /**
+     * build the topology with the default settings. the payments of the <code>transactions</code> topic are parsed
+     * into <code>PaymentDTO</code>s and aggregated per iban and month, keyed by <code>StoreKeys.monthKey</code>, into
+     * the <code>BankAccountDTO</code> with the transactions of the month and the <code>MonthlySummaryDTO</code> with
+     * its totals. repartitioned by iban alone they also keep the daily balances in <code>BalanceMonthDTO</code>s, and
+     * the daily exchange rates are loaded into a global table.
+     * 
+     * @param topicFormat - the format of the values in the <code>transactions</code> topic
+     * @param storeFormat - the format of the values in our state stores and repartition topics
+     * @return streams topology
+     */
+    public static Topology buildTopology(SerdeFormat topicFormat, SerdeFormat storeFormat){
+        return buildTopology(topicFormat, storeFormat, TopologySettings.defaults());
+    }
+
+    /**
+     * same as <code>buildTopology(topicFormat, storeFormat)</code>, with the optional parts of the topology:
+     *
+     * with a dedup window a <code>DeduplicationProcessor</code> drops the payments whose <code>paymentId</code>
+     * was already seen within the window, before they reach the aggregations.
+     *
+     * with a spending retention the transactions of every account are also aggregated in each
+     * <code>SpendingWindow</code>, into window stores that keep the windows for the retention. payments that arrive
+     * more than the grace period after the end of their window are left out of it.
+     *
+     * with summary events the monthly summaries are published to the <code>monthly-summaries</code> topic, in the
+     * format of the <code>transactions</code> topic. the updates of a month are suppressed for the summary interval
+     * (in stream time), so a burst of transactions only publishes the summary once, and a
+     * <code>MonthCloseProcessor</code> publishes every month once more as closed after its grace period.
+     *
+     * the key of every month bucket that changes is passed to <code>monthUpdates</code>, on the stream thread, so
+     * whatever was built from the old version of the month can be dropped. with a record cache the updates of a
+     * month are only passed on when the cache is flushed.
+     * @param topicFormat - the format of the values in the <code>transactions</code> topic
+     * @param storeFormat - the format of the values in our state stores and repartition topics
+     * @param settings - the optional parts of the topology
+     * @return streams topology
+     */
+    public static Topology buildTopology(SerdeFormat topicFormat, SerdeFormat storeFormat,
+                                         TopologySettings settings){
         StreamsBuilder streamsBuilder = new StreamsBuilder();
 
-        JsonSerde<PaymentDTO> paymentJsonSerde = new JsonSerde<>(PaymentDTO.class);
-        JsonSerde<BankAccountDTO> bankAccountSerde = new JsonSerde<>(BankAccountDTO.class);
+        Serde<PaymentDTO> paymentTopicSerde = ValueSerdes.forFormat(topicFormat, PaymentDTO.class);
+        Serde<PaymentDTO> paymentSerde = ValueSerdes.forFormat(storeFormat, PaymentDTO.class);
+        Serde<BankAccountDTO> bankAccountSerde = ValueSerdes.forFormat(storeFormat, BankAccountDTO.class);
+        Serde<MonthlySummaryDTO> summarySerde = ValueSerdes.forFormat(storeFormat, MonthlySummaryDTO.class);
+        Serde<BalanceMonthDTO> balanceSerde = ValueSerdes.forFormat(storeFormat, BalanceMonthDTO.class);
+        Serde<SpendingDTO> spendingSerde = ValueSerdes.forFormat(storeFormat, SpendingDTO.class);
 
-        streamsBuilder
-                .stream("transactions", Consumed.with(Serdes.String(), paymentJsonSerde))
-                .peek((transactionKey, transactionValue) -> transactionValue.setPaymentId(transactionKey))
-                .groupBy((transactionKey, transactionValue) -> transactionValue.getIBan())
+//        the topology is built outside of spring, spring boot adds its registries to the global one
+        Counter ingestedTransactions = Counter.builder("payment.ingest.records")
+                .description("records read from a source topic")
+                .tag("topic", TRANSACTIONS_TOPIC)
+                .register(Metrics.globalRegistry);
+        Counter rejectedTransactions = Counter.builder("payment.ingest.rejected")
+                .description("records dropped because their amount or date can't be read")
+                .tag("topic", TRANSACTIONS_TOPIC)
+                .register(Metrics.globalRegistry);
+        DistributionSummary transactionsPerAccount = DistributionSummary.builder("payment.account.transactions")
+                .description("transactions in the month bucket of an account after an update")
+                .register(Metrics.globalRegistry);
+
+        KStream<String, PaymentDTO> transactions = streamsBuilder
+                .stream(TRANSACTIONS_TOPIC, Consumed.with(Serdes.String(), paymentTopicSerde))
+                .peek((transactionKey, transactionValue) -> {
+                    ingestedTransactions.increment();
+                    transactionValue.setPaymentId(transactionKey);
+                })
+                .mapValues(PaymentDTO::normalize)
+                .filter((transactionKey, transactionValue) -> {
+                    if(isValidTransaction(transactionValue)){
+                        return true;
+                    }
+                    rejectedTransactions.increment();
+                    return false;
+                });
+
+        if(!settings.getDedupWindow().isZero()){
+            Counter duplicateTransactions = Counter.builder("payment.ingest.duplicates")
+                    .description("records dropped because their paymentId was already seen within the dedup window")
+                    .tag("topic", TRANSACTIONS_TOPIC)
+                    .register(Metrics.globalRegistry);
+            streamsBuilder.addStateStore(DeduplicationProcessor.storeBuilder(settings.getDedupWindow()));
+            transactions = transactions.processValues(
+                    () -> new DeduplicationProcessor<>(settings.getDedupWindow(), duplicateTransactions),
+                    DeduplicationProcessor.DEDUP_STORE);
+        }
+
+        KGroupedStream<String, PaymentDTO> monthTransactions = transactions
+                .groupBy((transactionKey, transactionValue) -> StoreKeys.monthKey(transactionValue),
+                        Grouped.with(Serdes.String(), paymentSerde));
+
+        monthTransactions
                 .aggregate(BankAccountDTO::new,
-                        (transactionKey, transactionValue, aggregate) -> aggregate.process(transactionValue),
+                        (transactionKey, transactionValue, aggregate) -> {
+                            aggregate.process(transactionValue);
+                            transactionsPerAccount.record(aggregate.getTransactions().size());
+                            return aggregate;
+                        },
                         Materialized.<String, BankAccountDTO, KeyValueStore<Bytes, byte[]>>as(PAYMENTS_STORE)
                                 .withKeySerde(Serdes.String())
                                 .withValueSerde(bankAccountSerde))
-                .toStream();
+                .toStream()
+                .foreach((monthKey, bucket) -> settings.getMonthUpdates().accept(monthKey));
+
+        KTable<String, MonthlySummaryDTO> summaries = monthTransactions
+                .aggregate(MonthlySummaryDTO::new,
+                        (transactionKey, transactionValue, aggregate) -> aggregate.process(transactionValue),
+                        Materialized.<String, MonthlySummaryDTO, KeyValueStore<Bytes, byte[]>>as(SUMMARY_STORE)
+                                .withKeySerde(Serdes.String())
+                                .withValueSerde(summarySerde));
+
+        if(settings.isSummaryEvents()){
+            Produced<String, SummaryEventDTO> summaryEvents = Produced.with(Serdes.String(),
+                    ValueSerdes.forFormat(topicFormat, SummaryEventDTO.class));
+
+            summaries
+                    .suppress(Suppressed.untilTimeLimit(settings.getSummaryInterval(),
+                                    Suppressed.BufferConfig.maxRecords(settings.getSummaryBufferRecords())
+                                            .emitEarlyWhenFull())
+                            .withName("monthly-summary-updates"))
+                    .toStream()
+                    .mapValues(summary -> new SummaryEventDTO(SummaryEventDTO.Type.UPDATED, summary))
+                    .to(SUMMARIES_TOPIC, summaryEvents);
+
+            streamsBuilder.addStateStore(MonthCloseProcessor.storeBuilder());
+            streamsBuilder.addStateStore(MonthCloseProcessor.openAccountsStoreBuilder());
+            summaries
+                    .toStream()
+                    .process(() -> new MonthCloseProcessor(settings.getMonthCloseGrace()),
+                            Named.as("monthly-summary-close"), SUMMARY_STORE, MonthCloseProcessor.CLOSE_STORE,
+                            MonthCloseProcessor.OPEN_ACCOUNTS_STORE)
+                    .to(SUMMARIES_TOPIC, summaryEvents);
+        }
+
+//        one repartition by iban for the balances and the spending windows, all the months of an account end up in
+//        the same task
+        KStream<String, PaymentDTO> accountTransactionStream = transactions
+                .selectKey((transactionKey, transactionValue) -> transactionValue.getIBan())
+                .repartition(Repartitioned.with(Serdes.String(), paymentSerde).withName("payments-by-account"));
+
+        streamsBuilder.addStateStore(BalanceProcessor.storeBuilder(balanceSerde));
+        accountTransactionStream.process(BalanceProcessor::new, Named.as("account-balances"), BALANCE_STORE);
+
+        KGroupedStream<String, PaymentDTO> accountTransactions = accountTransactionStream
+                .groupByKey(Grouped.with(Serdes.String(), paymentSerde));
+
+        if(!settings.getSpendingRetention().isZero()){
+            for(SpendingWindow window : SpendingWindow.values()){
+                accountTransactions
+                        .windowedBy(window.timeWindows(settings.getSpendingGrace()))
+                        .aggregate(SpendingDTO::new,
+                                (transactionKey, transactionValue, aggregate) -> aggregate.process(transactionValue),
+                                Materialized.<String, SpendingDTO, WindowStore<Bytes, byte[]>>as(
+                                                window.getStoreName())
+                                        .withKeySerde(Serdes.String())
+                                        .withValueSerde(spendingSerde)
+                                        .withRetention(window.retention(settings.getSpendingRetention(),
+                                                settings.getSpendingGrace())));
+            }
+        }
+
+        streamsBuilder
+                .globalTable(EXCHANGE_RATES_TOPIC, Consumed.with(Serdes.String(), Serdes.String()),
+                        Materialized.<String, String, KeyValueStore<Bytes, byte[]>>as(EXCHANGE_RATE_STORE)
+                                .withKeySerde(Serdes.String())
+                                .withValueSerde(Serdes.String()));
 
         return streamsBuilder.build();
     }
+
+    private static boolean isValidTransaction(PaymentDTO transaction){
+        if(transaction.getCurrency() == null || transaction.getTransactionDate() == null){
+            log.warn("Dropping transaction {} with invalid amount or currency '{}' or date {}",
+                    transaction.getPaymentId(), transaction.getAmount(), transaction.getTransactionDate());
+            return false;
+        }
+        return true;
+    }
 }
@@ -0,0 +1,71 @@
+package com.jatinc.ebank.topology;
+
+import org.apache.kafka.streams.kstream.TimeWindows;
+
+import java.time.Duration;
+
+/**
+ * The time windows the spending of every iban account is aggregated over, each one in its own window store.
+ *
+ * the windows follow the timestamps of the records in the <code>transactions</code> topic, not the transaction
+ * dates, which have no time of day.
+ */
+public enum SpendingWindow {
+
+    /**
+     * tumbling windows of one hour
+     */
+    HOUR("spending-hourly-store", Duration.ofHours(1), Duration.ofHours(1)),
+
+    /**
+     * tumbling windows of one day
+     */
+    DAY("spending-daily-store", Duration.ofDays(1), Duration.ofDays(1)),
+
+    /**
+     * the last 24 hours, in hopping windows that start every hour
+     */
+    ROLLING_DAY("spending-rolling-day-store", Duration.ofDays(1), Duration.ofHours(1));
+
+    private final String storeName;
+    private final Duration size;
+    private final Duration advance;
+
+    SpendingWindow(String storeName, Duration size, Duration advance){
+        this.storeName = storeName;
+        this.size = size;
+        this.advance = advance;
+    }
+
+    /**
+     * get the windows to aggregate with
+     * @param grace - how long after the end of a window late records are still added to it
+     * @return the windows.
+     */
+    public TimeWindows timeWindows(Duration grace){
+        return TimeWindows.ofSizeAndGrace(size, grace).advanceBy(advance);
+    }
+
+    /**
+     * get how long the windows are kept
+     * @param retention - how long the windows should be kept
+     * @param grace - the grace period of the windows
+     * @return the retention, at least as long as a window and its grace period as kafka streams requires.
+     */
+    public Duration retention(Duration retention, Duration grace){
+        Duration minimum = size.plus(grace);
+        return retention.compareTo(minimum) < 0 ? minimum : retention;
+    }
+
+    public String getStoreName(){
+        return storeName;
+    }
+
+    public Duration getSize(){
+        return size;
+    }
+
+    public Duration getAdvance(){
+        return advance;
+    }
+}
@@ -0,0 +1,84 @@
+package com.jatinc.ebank.topology;
+
+import com.jatinc.ebank.dto.PaymentDTO;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+
+/**
+ * Helpers for building the composite keys used by our state stores.
+ *
+ * keys are plain strings of the form <code>IBAN|yyyy-MM</code>, since the string serde writes them as utf-8 bytes
+ * the buckets of one account sit next to each other in RocksDB ordered by month, which lets us range scan an
+ * account without touching anyone else's data.
+ *
+ * exchange rates are keyed as <code>BASE|TARGET|yyyy-MM-dd</code>, with the date last so all the days of a month
+ * for one currency pair can be read with a single range query.
+ */
+public final class StoreKeys {
+
+    public static final String SEPARATOR = "|";
+
+    private static final YearMonth FIRST_MONTH = YearMonth.of(0, 1);
+    private static final YearMonth LAST_MONTH = YearMonth.of(9999, 12);
+
+    private StoreKeys(){
+    }
+
+    /**
+     * get the key of the bucket holding all the transactions of an account in a month
+     * @param iBan - the iban account
+     * @param month - the month of the bucket
+     * @return string containing the composite key.
+     */
+    public static String monthKey(String iBan, YearMonth month){
+        return iBan + SEPARATOR + month.toString();
+    }
+
+    /**
+     * get the key of the bucket a transaction belongs to
+     * @param payment - the transaction
+     * @return string containing the composite key.
+     */
+    public static String monthKey(PaymentDTO payment){
+        return monthKey(payment.getIBan(), YearMonth.from(payment.getTransactionDate()));
+    }
+
+    /**
+     * get the month of a bucket from its key
+     * @param monthKey - the key, see <code>monthKey</code>
+     * @return the month of the bucket.
+     */
+    public static YearMonth monthOf(String monthKey){
+        return YearMonth.parse(monthKey.substring(monthKey.lastIndexOf(SEPARATOR) + 1));
+    }
+
+    /**
+     * get the lowest possible key of an account, to be used as the start of a range query
+     * @param iBan - the iban account
+     * @return string containing the composite key.
+     */
+    public static String firstMonthKey(String iBan){
+        return monthKey(iBan, FIRST_MONTH);
+    }
+
+    /**
+     * get the highest possible key of an account, to be used as the (inclusive) end of a range query
+     * @param iBan - the iban account
+     * @return string containing the composite key.
+     */
+    public static String lastMonthKey(String iBan){
+        return monthKey(iBan, LAST_MONTH);
+    }
+
+    /**
+     * get the key of the exchange rate between two currencies on a day
+     * @param baseCurrency - the currency we convert from
+     * @param currency - the currency we convert to
+     * @param date - the day of the rate
+     * @return string containing the composite key.
+     */
+    public static String rateKey(String baseCurrency, String currency, LocalDate date){
+        return baseCurrency + SEPARATOR + currency + SEPARATOR + date.toString();
+    }
+}
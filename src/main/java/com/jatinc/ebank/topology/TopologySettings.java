@@ -0,0 +1,74 @@
+package com.jatinc.ebank.topology;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.Duration;
+import java.util.function.Consumer;
+
+/**
+ * The optional parts of the topology built by <code>PaymentTopology</code>, everything is off by default.
+ */
+@Value
+@Builder
+public class TopologySettings {
+
+    /**
+     * how long a <code>paymentId</code> is remembered to drop the payments that are sent again, see
+     * <code>DeduplicationProcessor</code>. zero turns deduplication off.
+     */
+    @Builder.Default
+    Duration dedupWindow = Duration.ZERO;
+
+    /**
+     * how long the spending windows of every account are kept, see <code>SpendingWindow</code>. zero turns the
+     * spending aggregations off.
+     */
+    @Builder.Default
+    Duration spendingRetention = Duration.ZERO;
+
+    /**
+     * how long after the end of a spending window late payments are still added to it
+     */
+    @Builder.Default
+    Duration spendingGrace = Duration.ofHours(1);
+
+    /**
+     * whether to publish the monthly summaries to the <code>monthly-summaries</code> topic, see
+     * <code>SummaryEventDTO</code>
+     */
+    @Builder.Default
+    boolean summaryEvents = false;
+
+    /**
+     * how long the updates of a month summary are held back before publishing the latest one, in stream time
+     */
+    @Builder.Default
+    Duration summaryInterval = Duration.ofSeconds(30);
+
+    /**
+     * how many month summaries can be held back at once per partition, when the buffer is full the oldest ones are
+     * published early
+     */
+    @Builder.Default
+    long summaryBufferRecords = 100_000;
+
+    /**
+     * how long after the end of a month it is published as closed, see <code>MonthCloseProcessor</code>
+     */
+    @Builder.Default
+    Duration monthCloseGrace = Duration.ofDays(3);
+
+    /**
+     * gets the store key of every month that changed, on the stream thread, so it has to be quick
+     */
+    @Builder.Default
+    Consumer<String> monthUpdates = monthKey -> { };
+
+    /**
+     * @return the settings of a topology with none of the optional parts.
+     */
+    public static TopologySettings defaults(){
+        return TopologySettings.builder().build();
+    }
+}
@@ -0,0 +1,200 @@
+package com.jatinc.ebank.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Currency;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Helpers for working with amounts as a <code>long</code> in the minor units of their currency (e.g. cents), so
+ * that summing and comparing amounts never has to go through strings, doubles or <code>BigDecimal</code>s.
+ *
+ * exchange rates are kept as fixed point numbers with <code>RATE_SCALE</code> decimals for the same reason.
+ */
+public final class MoneyUtil {
+
+    public static final int RATE_SCALE = 9;
+
+    private static final long[] POWERS_OF_TEN = {
+            1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L, 1_000_000_000L,
+            10_000_000_000L, 100_000_000_000L, 1_000_000_000_000L, 10_000_000_000_000L, 100_000_000_000_000L,
+            1_000_000_000_000_000L, 10_000_000_000_000_000L, 100_000_000_000_000_000L, 1_000_000_000_000_000_000L
+    };
+
+    private MoneyUtil(){
+    }
+
+    /**
+     * get the number of decimals a currency uses for its minor units
+     * @param currency - the iso 4217 currency code
+     * @return the number of decimals.
+     * @throws IllegalArgumentException if the code is not an iso 4217 currency with minor units.
+     */
+    public static int fractionDigits(String currency){
+        int digits = Currency.getInstance(currency).getDefaultFractionDigits();
+        if(digits < 0){
+//            e.g. XAU or XXX, which have no minor units to keep an amount in
+            throw new IllegalArgumentException("Not a currency with minor units: " + currency);
+        }
+        return digits;
+    }
+
+    /**
+     * check a currency code before amounts are kept or converted in it
+     * @param currency - the currency code
+     * @return whether the code is an iso 4217 currency with minor units.
+     */
+    public static boolean isCurrency(String currency){
+        if(currency == null){
+            return false;
+        }
+        try{
+            fractionDigits(currency);
+            return true;
+        }catch(IllegalArgumentException ex){
+            return false;
+        }
+    }
+
+    /**
+     * get the currency of an amount in the format <code>EUR 12.34</code>
+     * @param amount - the amount string
+     * @return the currency code.
+     * @throws IllegalArgumentException if the amount doesn't start with an iso 4217 currency code.
+     */
+    public static String parseCurrency(String amount){
+        String currency = amount.substring(0, 3);
+        if(!isCurrency(currency)){
+            throw new IllegalArgumentException("No currency in: " + amount);
+        }
+        return currency;
+    }
+
+    /**
+     * parse an amount in the format <code>EUR 12.34</code> into the minor units of its currency, amounts with more
+     * decimals than the currency has are rounded half even.
+     * @param amount - the amount string
+     * @param fractionDigits - the number of decimals of the currency
+     * @return the amount in minor units.
+     * @throws NumberFormatException if the amount is not a number.
+     */
+    public static long parseMinorUnits(String amount, int fractionDigits){
+        int length = amount.length();
+        int position = 3;
+        while(position < length && amount.charAt(position) == ' '){
+            position++;
+        }
+
+        boolean negative = position < length && amount.charAt(position) == '-';
+        if(negative || (position < length && amount.charAt(position) == '+')){
+            position++;
+        }
+
+//        fast path for plain numbers, anything unusual (exponents, too many decimals, overflow) is left to BigDecimal
+        long value = 0;
+        int digits = 0;
+        int decimals = -1;
+        for(; position < length; position++){
+            char character = amount.charAt(position);
+            if(character == '.' && decimals < 0){
+                decimals = 0;
+            }else if(character >= '0' && character <= '9' && decimals < fractionDigits && value < Long.MAX_VALUE / 100){
+                value = value * 10 + (character - '0');
+                digits++;
+                if(decimals >= 0){
+                    decimals++;
+                }
+            }else{
+                return parseMinorUnitsSlow(amount, fractionDigits);
+            }
+        }
+
+        if(digits == 0){
+            throw new NumberFormatException("No amount in: " + amount);
+        }
+
+        value *= POWERS_OF_TEN[fractionDigits - Math.max(decimals, 0)];
+        return negative ? -value : value;
+    }
+
+    private static long parseMinorUnitsSlow(String amount, int fractionDigits){
+        return new BigDecimal(amount.substring(3).trim())
+                .movePointRight(fractionDigits)
+                .setScale(0, RoundingMode.HALF_EVEN)
+                .longValueExact();
+    }
+
+    /**
+     * get an amount in minor units as a decimal in major units
+     * @param amountMinor - the amount in minor units
+     * @param currency - the currency of the amount
+     * @return the amount as a decimal, with the scale of the currency.
+     */
+    public static BigDecimal toDecimal(long amountMinor, String currency){
+        return BigDecimal.valueOf(amountMinor, fractionDigits(currency));
+    }
+
+    /**
+     * get amounts in minor units of several currencies as decimals in major units
+     * @param amounts - the amounts in minor units by currency
+     * @return the amounts as decimals by currency, in the same order.
+     */
+    public static Map<String, Object> toDecimals(Map<String, Long> amounts){
+        Map<String, Object> decimals = new LinkedHashMap<>();
+        amounts.forEach((currency, amount) -> decimals.put(currency, toDecimal(amount, currency)));
+        return decimals;
+    }
+
+    /**
+     * format an amount in minor units as <code>EUR 12.34</code>
+     * @param amountMinor - the amount in minor units
+     * @param currency - the currency of the amount
+     * @return the amount string.
+     */
+    public static String format(long amountMinor, String currency){
+        return currency + " " + toDecimal(amountMinor, currency).toPlainString();
+    }
+
+    /**
+     * get an exchange rate as a fixed point number with <code>RATE_SCALE</code> decimals
+     * @param rate - the exchange rate
+     * @return the fixed point rate.
+     */
+    public static long toFixedPointRate(BigDecimal rate){
+        return rate.movePointRight(RATE_SCALE).setScale(0, RoundingMode.HALF_EVEN).longValueExact();
+    }
+
+    /**
+     * convert an amount in minor units to another currency, rounding half even to the minor units of the target
+     * @param amountMinor - the amount in minor units of the source currency
+     * @param fixedPointRate - the exchange rate, see <code>toFixedPointRate</code>
+     * @param sourceDigits - the number of decimals of the source currency
+     * @param targetDigits - the number of decimals of the target currency
+     * @return the amount in minor units of the target currency.
+     */
+    public static long convert(long amountMinor, long fixedPointRate, int sourceDigits, int targetDigits){
+        int shift = RATE_SCALE + sourceDigits - targetDigits;
+        try{
+            long product = Math.multiplyExact(amountMinor, fixedPointRate);
+            return shift >= 0
+                    ? divideHalfEven(product, POWERS_OF_TEN[shift])
+                    : Math.multiplyExact(product, POWERS_OF_TEN[-shift]);
+        }catch(ArithmeticException overflow){
+            return BigDecimal.valueOf(amountMinor)
+                    .multiply(BigDecimal.valueOf(fixedPointRate))
+                    .movePointLeft(shift)
+                    .setScale(0, RoundingMode.HALF_EVEN)
+                    .longValueExact();
+        }
+    }
+
+    private static long divideHalfEven(long dividend, long divisor){
+        long quotient = dividend / divisor;
+        long twiceRemainder = Math.abs(dividend % divisor) * 2;
+        if(twiceRemainder > divisor || (twiceRemainder == divisor && (quotient & 1) != 0)){
+            quotient += Long.signum(dividend);
+        }
+        return quotient;
+    }
+}
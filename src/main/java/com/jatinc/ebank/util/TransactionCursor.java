@@ -0,0 +1,78 @@
+package com.jatinc.ebank.util;
+
+import com.jatinc.ebank.dto.BankAccountDTO;
+import com.jatinc.ebank.dto.PaymentDTO;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Position in the transactions of a month, pointing right after the transaction with the given date and id.
+ *
+ * the transactions of a month are kept ordered by <code>BankAccountDTO.TRANSACTION_ORDER</code>, so a page can be
+ * found with a binary search, and new transactions arriving in between pages don't shift the following pages.
+ * clients only see it as an opaque url safe token.
+ */
+public final class TransactionCursor {
+
+    private static final char SEPARATOR = ':';
+
+    private final LocalDate transactionDate;
+    private final String paymentId;
+
+    private TransactionCursor(LocalDate transactionDate, String paymentId){
+        this.transactionDate = transactionDate;
+        this.paymentId = paymentId;
+    }
+
+    /**
+     * get the cursor pointing right after a transaction
+     * @param transaction - the last transaction of a page
+     * @return the cursor.
+     */
+    public static TransactionCursor after(PaymentDTO transaction){
+        return new TransactionCursor(transaction.getTransactionDate(), transaction.getPaymentId());
+    }
+
+    /**
+     * read a cursor from its token
+     * @param token - the token from <code>encode</code>
+     * @return the cursor.
+     * @throws IllegalArgumentException if the token is not a valid cursor.
+     */
+    public static TransactionCursor decode(String token){
+        try{
+            String cursor = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = cursor.indexOf(SEPARATOR);
+            return new TransactionCursor(LocalDate.ofEpochDay(Long.parseLong(cursor.substring(0, separator))),
+                    cursor.substring(separator + 1));
+        }catch(RuntimeException ex){
+            throw new IllegalArgumentException("Invalid cursor: " + token, ex);
+        }
+    }
+
+    /**
+     * @return the cursor as an opaque url safe token.
+     */
+    public String encode(){
+        String cursor = transactionDate.toEpochDay() + String.valueOf(SEPARATOR) + paymentId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * find where the cursor points to in the transactions of a month
+     * @param transactions - the transactions, ordered by <code>BankAccountDTO.TRANSACTION_ORDER</code>
+     * @return index of the first transaction after the cursor.
+     */
+    public int positionIn(List<PaymentDTO> transactions){
+        PaymentDTO probe = new PaymentDTO();
+        probe.setTransactionDate(transactionDate);
+        probe.setPaymentId(paymentId);
+
+        int index = Collections.binarySearch(transactions, probe, BankAccountDTO.TRANSACTION_ORDER);
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+}
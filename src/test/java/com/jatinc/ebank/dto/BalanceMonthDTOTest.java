@@ -0,0 +1,118 @@
+package com.jatinc.ebank.dto;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.YearMonth;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BalanceMonthDTOTest {
+
+    private static final String IBAN = "NL91ABNA0417164300";
+    private static final YearMonth JANUARY = YearMonth.of(2023, 1);
+    private static final YearMonth FEBRUARY = YearMonth.of(2023, 2);
+
+    @Test
+    void keepsTheClosingBalanceOfEveryDayWithTransactions(){
+        BalanceMonthDTO month = BalanceMonthDTO.open(IBAN, JANUARY, null);
+        month.process(payment("EUR -100.00", JANUARY, 3));
+        month.process(payment("EUR 30.00", JANUARY, 10));
+        month.process(payment("EUR 20.00", JANUARY, 10));
+
+        assertThat(month.getDays()).containsExactly(3, 10);
+        assertThat(month.getCount()).isEqualTo(3);
+        assertThat(month.balancesAt(2)).containsExactly(Map.entry("EUR", 0L));
+        assertThat(month.balancesAt(3)).containsExactly(Map.entry("EUR", 10000L));
+        assertThat(month.balancesAt(9)).containsExactly(Map.entry("EUR", 10000L));
+        assertThat(month.balancesAt(10)).containsExactly(Map.entry("EUR", 5000L));
+        assertThat(month.closingBalances()).containsExactly(Map.entry("EUR", 5000L));
+    }
+
+    @Test
+    void movesTheLaterDaysForABackDatedTransaction(){
+        BalanceMonthDTO month = BalanceMonthDTO.open(IBAN, JANUARY, null);
+        month.process(payment("EUR 10.00", JANUARY, 20));
+        month.process(payment("EUR -50.00", JANUARY, 5));
+
+        assertThat(month.getDays()).containsExactly(5, 20);
+        assertThat(month.balancesAt(5)).containsExactly(Map.entry("EUR", 5000L));
+        assertThat(month.balancesAt(20)).containsExactly(Map.entry("EUR", 4000L));
+    }
+
+    @Test
+    void startsNewCurrenciesAtZeroOnEveryEarlierDay(){
+        BalanceMonthDTO month = BalanceMonthDTO.open(IBAN, JANUARY, null);
+        month.process(payment("EUR -10.00", JANUARY, 3));
+        month.process(payment("JPY -500", JANUARY, 7));
+
+        assertThat(month.balancesAt(3)).containsExactly(Map.entry("EUR", 1000L), Map.entry("JPY", 0L));
+        assertThat(month.balancesAt(7)).containsExactly(Map.entry("EUR", 1000L), Map.entry("JPY", 500L));
+    }
+
+    @Test
+    void opensFromTheClosingBalancesOfThePreviousMonth(){
+        BalanceMonthDTO january = BalanceMonthDTO.open(IBAN, JANUARY, null);
+        january.process(payment("EUR -100.00", JANUARY, 3));
+        january.process(payment("USD -1.00", JANUARY, 31));
+
+        BalanceMonthDTO february = BalanceMonthDTO.open(IBAN, FEBRUARY, january);
+        assertThat(february.getDays()).isEmpty();
+        assertThat(february.balancesAt(1)).containsExactly(Map.entry("EUR", 10000L), Map.entry("USD", 100L));
+
+        february.process(payment("EUR 25.00", FEBRUARY, 14));
+        assertThat(february.balancesAt(13)).containsExactly(Map.entry("EUR", 10000L), Map.entry("USD", 100L));
+        assertThat(february.closingBalances()).containsExactly(Map.entry("EUR", 7500L), Map.entry("USD", 100L));
+    }
+
+    @Test
+    void carriesABackDatedTransactionIntoALaterMonth(){
+        BalanceMonthDTO january = BalanceMonthDTO.open(IBAN, JANUARY, null);
+        january.process(payment("EUR -100.00", JANUARY, 3));
+        BalanceMonthDTO february = BalanceMonthDTO.open(IBAN, FEBRUARY, january);
+        february.process(payment("EUR 25.00", FEBRUARY, 14));
+
+//        what BalanceProcessor does with the later months for a transaction of january
+        PaymentDTO backDated = payment("EUR 40.00", JANUARY, 20);
+        january.process(backDated);
+        february.carry(backDated.getCurrency(), -backDated.getAmountMinor());
+
+        assertThat(january.closingBalances()).containsExactly(Map.entry("EUR", 6000L));
+        assertThat(february.getCurrencies().get("EUR").getOpening()).isEqualTo(6000L);
+        assertThat(february.balancesAt(14)).containsExactly(Map.entry("EUR", 3500L));
+        assertThat(february.closingBalances()).isEqualTo(
+                BalanceMonthDTO.open(IBAN, FEBRUARY, january)
+                        .process(payment("EUR 25.00", FEBRUARY, 14))
+                        .closingBalances());
+    }
+
+    @Test
+    void carriesANewCurrencyIntoEveryDayOfALaterMonth(){
+        BalanceMonthDTO february = BalanceMonthDTO.open(IBAN, FEBRUARY, null);
+        february.process(payment("EUR -10.00", FEBRUARY, 2));
+        february.process(payment("EUR -10.00", FEBRUARY, 9));
+
+        february.carry("USD", 300);
+
+        assertThat(february.getCurrencies().get("USD").getOpening()).isEqualTo(300L);
+        assertThat(february.getCurrencies().get("USD").getClosing()).containsExactly(300L, 300L);
+        assertThat(february.closingBalances()).containsExactly(Map.entry("EUR", 2000L), Map.entry("USD", 300L));
+    }
+
+    @Test
+    void buildsWithEmptyBalances(){
+        BalanceMonthDTO month = BalanceMonthDTO.builder().iBan(IBAN).month(JANUARY).build();
+
+        month.process(payment("EUR -10.00", JANUARY, 2));
+        assertThat(month.closingBalances()).containsExactly(Map.entry("EUR", 1000L));
+    }
+
+    private static PaymentDTO payment(String amount, YearMonth month, int day){
+        return PaymentDTO.builder()
+                .paymentId(month + "-" + day + "-" + amount)
+                .amount(amount)
+                .iBan(IBAN)
+                .transactionDate(month.atDay(day))
+                .build();
+    }
+}
@@ -0,0 +1,157 @@
+package com.jatinc.ebank.serdes;
+
+import com.jatinc.ebank.dto.BalanceMonthDTO;
+import com.jatinc.ebank.dto.BankAccountDTO;
+import com.jatinc.ebank.dto.MonthlySummaryDTO;
+import com.jatinc.ebank.dto.PaymentDTO;
+import com.jatinc.ebank.dto.SpendingDTO;
+import com.jatinc.ebank.dto.SummaryEventDTO;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Serde;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BinarySerdeTest {
+
+    private static final String IBAN = "NL91ABNA0417164300";
+    private static final String OTHER_IBAN = "DE89370400440532013000";
+    private static final YearMonth MONTH = YearMonth.of(2023, 3);
+
+    @Test
+    void roundTripsPayments(){
+        PaymentDTO parsed = payment("p-1", "EUR 12.34", IBAN, 5);
+        PaymentDTO unparsed = payment("p-2", "not an amount", IBAN, 6);
+        PaymentDTO withoutDate = payment("p-3", "JPY 1200", IBAN, 7);
+        withoutDate.setTransactionDate(null);
+
+        for(PaymentDTO payment : List.of(parsed, unparsed, withoutDate)){
+            PaymentDTO read = roundTrip(PaymentDTO.class, payment);
+            assertThat(read).isEqualTo(payment);
+        }
+        assertThat(roundTrip(PaymentDTO.class, parsed).getAmountMinor()).isEqualTo(1234);
+        assertThat(roundTrip(PaymentDTO.class, unparsed).getCurrency()).isNull();
+    }
+
+    @Test
+    void roundTripsMonthBuckets(){
+        BankAccountDTO bucket = new BankAccountDTO();
+//        a transaction of another account keeps its iban, the others leave it out
+        bucket.process(payment("p-3", "USD 1.50", OTHER_IBAN, 9));
+        bucket.process(payment("p-2", "EUR -5.00", IBAN, 9));
+        bucket.process(payment("p-1", "EUR 12.34", IBAN, 2));
+
+        BankAccountDTO read = roundTrip(BankAccountDTO.class, bucket);
+        assertThat(read.getIBan()).isEqualTo(IBAN);
+        assertThat(read.getMonth()).isEqualTo(MONTH);
+        assertThat(read.getLastUpdate()).isEqualTo(bucket.getLastUpdate());
+        assertThat(read.getTransactions()).containsExactlyElementsOf(bucket.getTransactions());
+        assertThat(read.getTransactions()).extracting(PaymentDTO::getPaymentId).containsExactly("p-1", "p-2", "p-3");
+    }
+
+    @Test
+    void roundTripsMonthBucketsThatWereReadBefore(){
+        BankAccountDTO bucket = new BankAccountDTO();
+        bucket.process(payment("p-1", "EUR 12.34", IBAN, 2));
+        bucket.process(payment("p-3", "EUR 1.00", IBAN, 20));
+
+//        the lazily read transactions are copied as they are, the new one is encoded
+        BankAccountDTO read = roundTrip(BankAccountDTO.class, bucket);
+        read.process(payment("p-2", "EUR 7.00", IBAN, 10));
+        BankAccountDTO readAgain = roundTrip(BankAccountDTO.class, read);
+
+        assertThat(readAgain.getTransactions()).extracting(PaymentDTO::getPaymentId)
+                .containsExactly("p-1", "p-2", "p-3");
+        assertThat(readAgain.getTransactions()).extracting(PaymentDTO::getAmountMinor)
+                .containsExactly(1234L, 700L, 100L);
+    }
+
+    @Test
+    void roundTripsMonthlySummaries(){
+        MonthlySummaryDTO summary = new MonthlySummaryDTO();
+        summary.process(payment("p-1", "EUR 12.34", IBAN, 2));
+        summary.process(payment("p-2", "EUR -5.00", IBAN, 31));
+        summary.process(payment("p-3", "USD 1.50", IBAN, 9));
+
+        assertThat(roundTrip(MonthlySummaryDTO.class, summary)).isEqualTo(summary);
+        assertThat(roundTrip(MonthlySummaryDTO.class, new MonthlySummaryDTO())).isEqualTo(new MonthlySummaryDTO());
+    }
+
+    @Test
+    void roundTripsSummaryEvents(){
+        MonthlySummaryDTO summary = new MonthlySummaryDTO();
+        summary.process(payment("p-1", "EUR 12.34", IBAN, 2));
+
+        for(SummaryEventDTO.Type type : SummaryEventDTO.Type.values()){
+            SummaryEventDTO event = new SummaryEventDTO(type, summary);
+            assertThat(roundTrip(SummaryEventDTO.class, event)).isEqualTo(event);
+        }
+    }
+
+    @Test
+    void roundTripsBalanceMonths(){
+        BalanceMonthDTO previous = BalanceMonthDTO.open(IBAN, MONTH.minusMonths(1), null);
+        previous.process(payment("p-1", "EUR -100.00", IBAN, MONTH.minusMonths(1).atDay(3)));
+        BalanceMonthDTO balanceMonth = BalanceMonthDTO.open(IBAN, MONTH, previous);
+        balanceMonth.process(payment("p-2", "EUR 12.34", IBAN, 2));
+        balanceMonth.process(payment("p-3", "USD -1.50", IBAN, 9));
+
+        assertThat(roundTrip(BalanceMonthDTO.class, balanceMonth)).isEqualTo(balanceMonth);
+    }
+
+    @Test
+    void roundTripsSpending(){
+        SpendingDTO spending = new SpendingDTO();
+        spending.process(payment("p-1", "EUR 12.34", IBAN, 2));
+        spending.process(payment("p-2", "EUR 3.00", IBAN, 2));
+        spending.process(payment("p-3", "USD 1.50", IBAN, 2));
+
+        assertThat(roundTrip(SpendingDTO.class, spending)).isEqualTo(spending);
+    }
+
+    @Test
+    void readsJsonValues(){
+        PaymentDTO payment = payment("p-1", "EUR 12.34", IBAN, 5);
+        byte[] json = new JsonSerde<>(PaymentDTO.class).serializer().serialize("topic", payment);
+
+        Serde<PaymentDTO> serde = ValueSerdes.forFormat(SerdeFormat.BINARY, PaymentDTO.class);
+        assertThat(serde.deserializer().deserialize("topic", json).getAmountMinor()).isEqualTo(1234);
+    }
+
+    @Test
+    void rejectsUnknownVersions(){
+        Serde<PaymentDTO> serde = ValueSerdes.forFormat(SerdeFormat.BINARY, PaymentDTO.class);
+        byte[] bytes = serde.serializer().serialize("topic", payment("p-1", "EUR 12.34", IBAN, 5));
+        bytes[1]++;
+
+        assertThatThrownBy(() -> serde.deserializer().deserialize("topic", bytes))
+                .isInstanceOf(SerializationException.class);
+    }
+
+    private static <T> T roundTrip(Class<T> type, T value){
+        Serde<T> serde = ValueSerdes.forFormat(SerdeFormat.BINARY, type);
+        byte[] bytes = serde.serializer().serialize("topic", value);
+        assertThat(bytes[0] & 0xFF).isEqualTo(BinarySerde.MAGIC_BYTE);
+        return serde.deserializer().deserialize("topic", bytes);
+    }
+
+    private static PaymentDTO payment(String paymentId, String amount, String iBan, int day){
+        return payment(paymentId, amount, iBan, MONTH.atDay(day));
+    }
+
+    private static PaymentDTO payment(String paymentId, String amount, String iBan, LocalDate date){
+        return PaymentDTO.builder()
+                .paymentId(paymentId)
+                .amount(amount)
+                .iBan(iBan)
+                .transactionDate(date)
+                .description("payment " + paymentId)
+                .build()
+                .normalize();
+    }
+}
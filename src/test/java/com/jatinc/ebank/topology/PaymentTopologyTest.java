@@ -0,0 +1,239 @@
+package com.jatinc.ebank.topology;
+
+import com.jatinc.ebank.dto.BalanceMonthDTO;
+import com.jatinc.ebank.dto.BankAccountDTO;
+import com.jatinc.ebank.dto.MonthlySummaryDTO;
+import com.jatinc.ebank.dto.PaymentDTO;
+import com.jatinc.ebank.dto.SummaryEventDTO;
+import com.jatinc.ebank.serdes.JsonSerde;
+import com.jatinc.ebank.serdes.SerdeFormat;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.TestInputTopic;
+import org.apache.kafka.streams.TestOutputTopic;
+import org.apache.kafka.streams.TopologyTestDriver;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Drives <code>PaymentTopology</code> through <code>TopologyTestDriver</code>, with json topics and binary stores
+ * like the application runs it.
+ */
+class PaymentTopologyTest {
+
+    private static final String IBAN = "NL91ABNA0417164300";
+    private static final String OTHER_IBAN = "DE89370400440532013000";
+    private static final YearMonth JANUARY = YearMonth.of(2023, 1);
+    private static final YearMonth FEBRUARY = YearMonth.of(2023, 2);
+    private static final YearMonth MARCH = YearMonth.of(2023, 3);
+
+    @TempDir
+    Path stateDir;
+
+    private TopologyTestDriver driver;
+    private TestInputTopic<String, PaymentDTO> transactions;
+
+    @AfterEach
+    void tearDown(){
+        if(driver != null){
+            driver.close();
+        }
+    }
+
+    @Test
+    void aggregatesTheTransactionsOfEveryAccountMonth(){
+        start(TopologySettings.defaults());
+
+        pipe("p-2", "EUR 12.34", IBAN, JANUARY.atDay(20));
+        pipe("p-1", "EUR -100.00", IBAN, JANUARY.atDay(3));
+        pipe("p-3", "USD 5.00", IBAN, JANUARY.atDay(20));
+        pipe("p-4", "EUR 1.00", IBAN, FEBRUARY.atDay(1));
+
+        BankAccountDTO bucket = this.<BankAccountDTO>store(PaymentTopology.PAYMENTS_STORE)
+                .get(StoreKeys.monthKey(IBAN, JANUARY));
+        assertThat(bucket.getTransactions()).extracting(PaymentDTO::getPaymentId).containsExactly("p-1", "p-2", "p-3");
+
+        MonthlySummaryDTO summary = this.<MonthlySummaryDTO>store(PaymentTopology.SUMMARY_STORE)
+                .get(StoreKeys.monthKey(IBAN, JANUARY));
+        assertThat(summary.getCount()).isEqualTo(3);
+        assertThat(summary.getCurrency()).isEqualTo("EUR");
+        assertThat(summary.getDebitedMinor()).isEqualTo(1234);
+        assertThat(summary.getCreditedMinor()).isEqualTo(10000);
+        assertThat(summary.getOtherCurrencies().get("USD").getDebitedMinor()).isEqualTo(500);
+        assertThat(summary.getFirstTransactionDate()).isEqualTo(JANUARY.atDay(3));
+        assertThat(summary.getLastTransactionDate()).isEqualTo(JANUARY.atDay(20));
+    }
+
+    @Test
+    void dropsTransactionsThatCantBeRead(){
+        start(TopologySettings.defaults());
+
+        pipe("p-1", "EUR 1.00", IBAN, JANUARY.atDay(3));
+        pipe("p-2", "ABC 1.00", IBAN, JANUARY.atDay(3));
+        pipe("p-3", "EUR one", IBAN, JANUARY.atDay(3));
+        transactions.pipeInput("p-4", PaymentDTO.builder().amount("EUR 1.00").iBan(IBAN).build(),
+                timestamp(JANUARY.atDay(3)));
+
+        MonthlySummaryDTO summary = this.<MonthlySummaryDTO>store(PaymentTopology.SUMMARY_STORE)
+                .get(StoreKeys.monthKey(IBAN, JANUARY));
+        assertThat(summary.getCount()).isEqualTo(1);
+        assertThat(summary.getOtherCurrencies()).isEmpty();
+    }
+
+    @Test
+    void keepsTheDailyBalancesOfEveryMonth(){
+        start(TopologySettings.defaults());
+
+        pipe("p-1", "EUR -100.00", IBAN, JANUARY.atDay(3));
+        pipe("p-2", "EUR 25.00", IBAN, FEBRUARY.atDay(14));
+        pipe("p-3", "EUR 10.00", IBAN, MARCH.atDay(1));
+
+        KeyValueStore<String, BalanceMonthDTO> balances = store(PaymentTopology.BALANCE_STORE);
+        assertThat(balances.get(StoreKeys.monthKey(IBAN, FEBRUARY)).getCurrencies().get("EUR").getOpening())
+                .isEqualTo(10000);
+        assertThat(balances.get(StoreKeys.monthKey(IBAN, MARCH)).closingBalances().get("EUR")).isEqualTo(6500);
+    }
+
+    @Test
+    void carriesBackDatedTransactionsIntoTheLaterMonths(){
+        start(TopologySettings.defaults());
+
+        pipe("p-1", "EUR -100.00", IBAN, JANUARY.atDay(3));
+        pipe("p-2", "EUR 25.00", IBAN, FEBRUARY.atDay(14));
+        pipe("p-3", "USD -2.00", IBAN, MARCH.atDay(1));
+        pipe("p-4", "EUR 40.00", IBAN, JANUARY.atDay(20));
+        pipe("p-5", "USD -1.00", OTHER_IBAN, JANUARY.atDay(20));
+
+        KeyValueStore<String, BalanceMonthDTO> balances = store(PaymentTopology.BALANCE_STORE);
+        BalanceMonthDTO january = balances.get(StoreKeys.monthKey(IBAN, JANUARY));
+        BalanceMonthDTO february = balances.get(StoreKeys.monthKey(IBAN, FEBRUARY));
+        BalanceMonthDTO march = balances.get(StoreKeys.monthKey(IBAN, MARCH));
+
+        assertThat(january.getDays()).containsExactly(3, 20);
+        assertThat(january.closingBalances().get("EUR")).isEqualTo(6000);
+        assertThat(february.getCurrencies().get("EUR").getOpening()).isEqualTo(6000);
+        assertThat(february.closingBalances().get("EUR")).isEqualTo(3500);
+        assertThat(march.getCurrencies().get("EUR").getOpening()).isEqualTo(3500);
+        assertThat(march.closingBalances()).containsEntry("EUR", 3500L).containsEntry("USD", 200L);
+//        the months of other accounts are left alone
+        assertThat(balances.get(StoreKeys.monthKey(OTHER_IBAN, JANUARY)).closingBalances())
+                .containsOnlyKeys("USD");
+    }
+
+    @Test
+    void dropsPaymentsThatWereSeenWithinTheDedupWindow(){
+        start(TopologySettings.builder().dedupWindow(Duration.ofHours(1)).build());
+
+        Instant sent = timestamp(JANUARY.atDay(3));
+        PaymentDTO payment = payment("EUR 10.00", IBAN, JANUARY.atDay(3));
+        transactions.pipeInput("p-1", payment, sent);
+        transactions.pipeInput("p-1", payment, sent.plus(Duration.ofMinutes(10)));
+        transactions.pipeInput("p-1", payment, sent.minus(Duration.ofMinutes(10)));
+        transactions.pipeInput("p-2", payment, sent.plus(Duration.ofMinutes(10)));
+
+        MonthlySummaryDTO summary = this.<MonthlySummaryDTO>store(PaymentTopology.SUMMARY_STORE)
+                .get(StoreKeys.monthKey(IBAN, JANUARY));
+        assertThat(summary.getCount()).isEqualTo(2);
+
+//        once the window is over the same id is a new payment
+        transactions.pipeInput("p-1", payment, sent.plus(Duration.ofHours(3)));
+        summary = this.<MonthlySummaryDTO>store(PaymentTopology.SUMMARY_STORE)
+                .get(StoreKeys.monthKey(IBAN, JANUARY));
+        assertThat(summary.getCount()).isEqualTo(3);
+    }
+
+    @Test
+    void closesEveryAccountMonthOnceAfterTheGracePeriod(){
+        start(TopologySettings.builder()
+                .summaryEvents(true)
+                .monthCloseGrace(Duration.ofDays(1))
+                .build());
+        TestOutputTopic<String, SummaryEventDTO> summaryEvents = driver.createOutputTopic(
+                PaymentTopology.SUMMARIES_TOPIC, Serdes.String().deserializer(),
+                new JsonSerde<>(SummaryEventDTO.class).deserializer());
+
+        pipe("p-1", "EUR 10.00", IBAN, JANUARY.atDay(10));
+        pipe("p-2", "EUR 20.00", OTHER_IBAN, JANUARY.atDay(12));
+//        still within the grace period of january
+        pipe("p-3", "EUR 30.00", IBAN, FEBRUARY.atDay(1));
+        assertThat(closed(summaryEvents.readKeyValuesToList())).isEmpty();
+
+        pipe("p-4", "EUR 40.00", IBAN, FEBRUARY.atDay(5));
+        List<KeyValue<String, SummaryEventDTO>> events = summaryEvents.readKeyValuesToList();
+        assertThat(closed(events)).extracting(event -> event.key)
+                .containsExactly(StoreKeys.monthKey(OTHER_IBAN, JANUARY), StoreKeys.monthKey(IBAN, JANUARY));
+        assertThat(closed(events)).extracting(event -> event.value.getSummary().getCount())
+                .containsExactly(1L, 1L);
+
+//        a late transaction of january is published as an update, january is not closed again
+        transactions.pipeInput("p-5", payment("EUR 50.00", IBAN, JANUARY.atDay(28)),
+                timestamp(FEBRUARY.atDay(6)));
+        pipe("p-6", "EUR 60.00", IBAN, MARCH.atDay(10));
+        events = summaryEvents.readKeyValuesToList();
+        assertThat(closed(events)).extracting(event -> event.key)
+                .containsExactly(StoreKeys.monthKey(IBAN, FEBRUARY));
+        assertThat(closed(events)).extracting(event -> event.value.getSummary().getCount())
+                .containsExactly(2L);
+        assertThat(events).filteredOn(event -> event.value.getType() == SummaryEventDTO.Type.UPDATED
+                        && event.key.equals(StoreKeys.monthKey(IBAN, JANUARY)))
+                .extracting(event -> event.value.getSummary().getCount())
+                .containsExactly(2L);
+    }
+
+    private void start(TopologySettings settings){
+        Properties properties = new Properties();
+        properties.put(StreamsConfig.APPLICATION_ID_CONFIG, "payment-topology-test");
+        properties.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "dummy:9092");
+        properties.put(StreamsConfig.STATE_DIR_CONFIG, stateDir.toString());
+        properties.put(StreamsConfig.CACHE_MAX_BYTES_BUFFERING_CONFIG, "0");
+
+        driver = new TopologyTestDriver(PaymentTopology.buildTopology(SerdeFormat.JSON, SerdeFormat.BINARY, settings),
+                properties);
+        transactions = driver.createInputTopic(PaymentTopology.TRANSACTIONS_TOPIC, Serdes.String().serializer(),
+                new JsonSerde<>(PaymentDTO.class).serializer());
+    }
+
+    private <V> KeyValueStore<String, V> store(String storeName){
+        return driver.getKeyValueStore(storeName);
+    }
+
+    /**
+     * pipe a payment with the start of its transaction date as the record timestamp
+     */
+    private void pipe(String paymentId, String amount, String iBan, LocalDate date){
+        transactions.pipeInput(paymentId, payment(amount, iBan, date), timestamp(date));
+    }
+
+    private static PaymentDTO payment(String amount, String iBan, LocalDate date){
+        return PaymentDTO.builder()
+                .amount(amount)
+                .iBan(iBan)
+                .transactionDate(date)
+                .description("test payment")
+                .build();
+    }
+
+    private static Instant timestamp(LocalDate date){
+        return date.atStartOfDay().toInstant(ZoneOffset.UTC);
+    }
+
+    private static List<KeyValue<String, SummaryEventDTO>> closed(List<KeyValue<String, SummaryEventDTO>> events){
+        return events.stream()
+                .filter(event -> event.value.getType() == SummaryEventDTO.Type.CLOSED)
+                .toList();
+    }
+}
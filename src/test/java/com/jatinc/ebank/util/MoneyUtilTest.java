@@ -0,0 +1,105 @@
+package com.jatinc.ebank.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MoneyUtilTest {
+
+    @Test
+    void parsesAmountsInMinorUnits(){
+        assertThat(MoneyUtil.parseMinorUnits("EUR 12.34", 2)).isEqualTo(1234);
+        assertThat(MoneyUtil.parseMinorUnits("EUR 12", 2)).isEqualTo(1200);
+        assertThat(MoneyUtil.parseMinorUnits("EUR 12.3", 2)).isEqualTo(1230);
+        assertThat(MoneyUtil.parseMinorUnits("EUR -0.05", 2)).isEqualTo(-5);
+        assertThat(MoneyUtil.parseMinorUnits("EUR   +1.00", 2)).isEqualTo(100);
+        assertThat(MoneyUtil.parseMinorUnits("JPY 1200", 0)).isEqualTo(1200);
+        assertThat(MoneyUtil.parseMinorUnits("BHD 1.234", 3)).isEqualTo(1234);
+        assertThat(MoneyUtil.parseMinorUnits("EUR 1.5e2", 2)).isEqualTo(15000);
+    }
+
+    @Test
+    void roundsExtraDecimalsHalfEven(){
+        assertThat(MoneyUtil.parseMinorUnits("EUR 12.345", 2)).isEqualTo(1234);
+        assertThat(MoneyUtil.parseMinorUnits("EUR 12.355", 2)).isEqualTo(1236);
+        assertThat(MoneyUtil.parseMinorUnits("EUR -12.345", 2)).isEqualTo(-1234);
+        assertThat(MoneyUtil.parseMinorUnits("JPY 0.5", 0)).isEqualTo(0);
+        assertThat(MoneyUtil.parseMinorUnits("JPY 1.5", 0)).isEqualTo(2);
+    }
+
+    @Test
+    void rejectsAmountsThatDontFitInMinorUnits(){
+        assertThatThrownBy(() -> MoneyUtil.parseMinorUnits("EUR 92233720368547758.08", 2))
+                .isInstanceOf(ArithmeticException.class);
+        assertThat(MoneyUtil.parseMinorUnits("EUR 92233720368547758.07", 2)).isEqualTo(Long.MAX_VALUE);
+    }
+
+    @Test
+    void rejectsAmountsThatAreNotNumbers(){
+        assertThatThrownBy(() -> MoneyUtil.parseMinorUnits("EUR", 2)).isInstanceOf(NumberFormatException.class);
+        assertThatThrownBy(() -> MoneyUtil.parseMinorUnits("EUR 12,34", 2))
+                .isInstanceOf(NumberFormatException.class);
+        assertThatThrownBy(() -> MoneyUtil.parseMinorUnits("EUR twelve", 2))
+                .isInstanceOf(NumberFormatException.class);
+    }
+
+    @Test
+    void acceptsOnlyCurrenciesWithMinorUnits(){
+        assertThat(MoneyUtil.parseCurrency("EUR 12.34")).isEqualTo("EUR");
+        assertThat(MoneyUtil.fractionDigits("JPY")).isZero();
+        assertThat(MoneyUtil.fractionDigits("BHD")).isEqualTo(3);
+
+        assertThat(MoneyUtil.isCurrency("EUR")).isTrue();
+        assertThat(MoneyUtil.isCurrency("ABC")).isFalse();
+        assertThat(MoneyUtil.isCurrency("eur")).isFalse();
+        assertThat(MoneyUtil.isCurrency("XAU")).isFalse();
+        assertThat(MoneyUtil.isCurrency(null)).isFalse();
+        assertThatThrownBy(() -> MoneyUtil.parseCurrency("ABC 12.34")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> MoneyUtil.fractionDigits("XXX")).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void formatsAmountsWithTheScaleOfTheirCurrency(){
+        assertThat(MoneyUtil.format(1234, "EUR")).isEqualTo("EUR 12.34");
+        assertThat(MoneyUtil.format(-5, "EUR")).isEqualTo("EUR -0.05");
+        assertThat(MoneyUtil.format(1200, "JPY")).isEqualTo("JPY 1200");
+        assertThat(MoneyUtil.toDecimal(1234, "BHD")).isEqualTo(new BigDecimal("1.234"));
+    }
+
+    @Test
+    void convertsBetweenCurrencyScales(){
+        long rate = MoneyUtil.toFixedPointRate(new BigDecimal("150.5"));
+
+//        EUR 10.00 to JPY and back
+        assertThat(MoneyUtil.convert(1000, rate, 2, 0)).isEqualTo(1505);
+        assertThat(MoneyUtil.convert(1505, MoneyUtil.toFixedPointRate(new BigDecimal("0.01")), 0, 2))
+                .isEqualTo(1505);
+//        EUR 1.00 to BHD, with more decimals than the source currency
+        assertThat(MoneyUtil.convert(100, MoneyUtil.toFixedPointRate(new BigDecimal("0.4")), 2, 3)).isEqualTo(400);
+    }
+
+    @Test
+    void roundsConversionsHalfEven(){
+        long half = MoneyUtil.toFixedPointRate(new BigDecimal("0.5"));
+
+        assertThat(MoneyUtil.convert(1, half, 2, 2)).isZero();
+        assertThat(MoneyUtil.convert(3, half, 2, 2)).isEqualTo(2);
+        assertThat(MoneyUtil.convert(5, half, 2, 2)).isEqualTo(2);
+        assertThat(MoneyUtil.convert(-3, half, 2, 2)).isEqualTo(-2);
+        assertThat(MoneyUtil.convert(-5, half, 2, 2)).isEqualTo(-2);
+    }
+
+    @Test
+    void convertsAmountsThatOverflowTheFixedPointProduct(){
+        long one = MoneyUtil.toFixedPointRate(BigDecimal.ONE);
+        long amount = Long.MAX_VALUE / 2;
+
+        assertThat(MoneyUtil.convert(amount, one, 2, 2)).isEqualTo(amount);
+        assertThat(MoneyUtil.convert(-amount, one, 2, 2)).isEqualTo(-amount);
+        assertThatThrownBy(() -> MoneyUtil.convert(amount, MoneyUtil.toFixedPointRate(new BigDecimal("3")), 2, 2))
+                .isInstanceOf(ArithmeticException.class);
+    }
+}
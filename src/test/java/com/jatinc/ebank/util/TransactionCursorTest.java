@@ -0,0 +1,92 @@
+package com.jatinc.ebank.util;
+
+import com.jatinc.ebank.dto.BankAccountDTO;
+import com.jatinc.ebank.dto.PaymentDTO;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TransactionCursorTest {
+
+    private static final LocalDate DAY = LocalDate.of(2023, 3, 10);
+
+    @Test
+    void pointsRightAfterTheLastTransactionOfAPage(){
+        BankAccountDTO bucket = bucket(
+                payment("p-1", DAY),
+                payment("p-2", DAY),
+                payment("p-0", DAY.plusDays(1)));
+
+        List<PaymentDTO> transactions = bucket.getTransactions();
+        assertThat(TransactionCursor.after(transactions.get(0)).positionIn(transactions)).isEqualTo(1);
+        assertThat(TransactionCursor.after(transactions.get(1)).positionIn(transactions)).isEqualTo(2);
+        assertThat(TransactionCursor.after(transactions.get(2)).positionIn(transactions)).isEqualTo(3);
+    }
+
+    @Test
+    void keepsItsPositionWhenTransactionsArriveBeforeIt(){
+        BankAccountDTO bucket = bucket(
+                payment("p-2", DAY),
+                payment("p-4", DAY.plusDays(2)));
+        TransactionCursor cursor = TransactionCursor.after(bucket.getTransactions().get(0));
+
+//        a back-dated transaction lands on the first page, the cursor still skips the same transactions
+        bucket.process(payment("p-1", DAY.minusDays(1)));
+        bucket.process(payment("p-3", DAY.plusDays(1)));
+
+        List<PaymentDTO> next = bucket.getTransactions().subList(cursor.positionIn(bucket.getTransactions()),
+                bucket.getTransactions().size());
+        assertThat(next).extracting(PaymentDTO::getPaymentId).containsExactly("p-3", "p-4");
+    }
+
+    @Test
+    void findsItsPositionWhenItsTransactionIsGone(){
+        BankAccountDTO bucket = bucket(
+                payment("p-1", DAY),
+                payment("p-3", DAY));
+
+        TransactionCursor cursor = TransactionCursor.after(payment("p-2", DAY));
+        assertThat(cursor.positionIn(bucket.getTransactions())).isEqualTo(1);
+    }
+
+    @Test
+    void roundTripsThroughAnUrlSafeToken(){
+        PaymentDTO transaction = payment("payment:1/+?", DAY);
+        BankAccountDTO bucket = bucket(transaction, payment("payment:2", DAY));
+
+        String token = TransactionCursor.after(transaction).encode();
+        assertThat(token).matches("[A-Za-z0-9_-]+");
+        assertThat(TransactionCursor.decode(token).positionIn(bucket.getTransactions())).isEqualTo(1);
+    }
+
+    @Test
+    void rejectsInvalidTokens(){
+        assertThatThrownBy(() -> TransactionCursor.decode("not a cursor"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> TransactionCursor.decode("bm90LWEtZGF5OnAtMQ"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> TransactionCursor.decode("MTkzNzE"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static BankAccountDTO bucket(PaymentDTO... transactions){
+        BankAccountDTO bucket = new BankAccountDTO();
+        for(PaymentDTO transaction : transactions){
+            bucket.process(transaction);
+        }
+        return bucket;
+    }
+
+    private static PaymentDTO payment(String paymentId, LocalDate date){
+        return PaymentDTO.builder()
+                .paymentId(paymentId)
+                .amount("EUR 1.00")
+                .iBan("NL91ABNA0417164300")
+                .transactionDate(date)
+                .build();
+    }
+}